@@ -1,6 +1,12 @@
 package com.edwardhicks.chess;
 
 public class CastleRights {
+    // Bit flags for packing the rights into an int
+    public static final int WKS = 1;
+    public static final int BKS = 2;
+    public static final int WQS = 4;
+    public static final int BQS = 8;
+
     public boolean wks;
     public boolean bks;
     public boolean wqs;
@@ -12,4 +18,15 @@ public class CastleRights {
         this.wqs = wqs;
         this.bqs = bqs;
     }
-}
\ No newline at end of file
+
+    public int toBits() {
+        return (wks ? WKS : 0) | (bks ? BKS : 0) | (wqs ? WQS : 0) | (bqs ? BQS : 0);
+    }
+
+    public void setFromBits(int bits) {
+        this.wks = (bits & WKS) != 0;
+        this.bks = (bits & BKS) != 0;
+        this.wqs = (bits & WQS) != 0;
+        this.bqs = (bits & BQS) != 0;
+    }
+}
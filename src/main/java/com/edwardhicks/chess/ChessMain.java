@@ -1,6 +1,12 @@
 package com.edwardhicks.chess;
 
 import javax.swing.*;
+import java.awt.GraphicsEnvironment;
+import java.io.IOException;
+
+import com.edwardhicks.chess.metrics.EngineMetrics;
+import com.edwardhicks.chess.trace.RingBufferTraceSink;
+import com.edwardhicks.chess.uci.UciEngine;
 import com.edwardhicks.chess.ui.BoardPanel;
 
 
@@ -13,6 +19,7 @@ public class ChessMain extends JFrame {
 
         // Initialize GameState and add board to window
         GameState gameState = new GameState();
+        gameState.setListener(new RingBufferTraceSink(1024, System.out));  // log the game to the console
         BoardPanel boardPanel = new BoardPanel(gameState);
         add(boardPanel);
 
@@ -21,7 +28,13 @@ public class ChessMain extends JFrame {
         setVisible(true);  // Triggers first paintComponent() call
     }
 
-    static void main(String[] args) {
+    // "uci" (or no display) runs the engine headless over stdin/stdout instead of opening a window
+    static void main(String[] args) throws IOException {
+        EngineMetrics.publish();
+        if (args.length > 0 && args[0].equals("uci") || GraphicsEnvironment.isHeadless()) {
+            new UciEngine(System.in, System.out).run();
+            return;
+        }
         SwingUtilities.invokeLater(ChessMain::new);
     }
 }
\ No newline at end of file
@@ -1,28 +1,65 @@
 package com.edwardhicks.chess;
 
-import java.lang.reflect.Array;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
-import static java.lang.Math.abs;
+
+import com.edwardhicks.chess.bitboard.Magics;
+import com.edwardhicks.chess.metrics.EngineMetrics;
+import com.edwardhicks.chess.trace.GameListener;
+
+import static com.edwardhicks.chess.PackedMove.NO_PIECE;
+import static com.edwardhicks.chess.bitboard.Bitboards.*;
 
 public class GameState {
     private final String[][] board;
+    private final int[] mailbox = new int[64];  // piece index on each square, NO_PIECE if empty
+    private final long[] pieceBitboards = new long[12];  // one per piece, indexed as in Bitboards.PIECE_CODES
+    private final long[] colorBitboards = new long[2];
+    private long occupied;
     public boolean whiteToMove;
-    public final List<Move> moveLog;
-    private final List<CastleRights> castleRightsLog;
-    private final List<Square> enPassantLog;
-    private Square whiteKingLocation;
-    private Square blackKingLocation;
-    private Square enPassantPossible;
-    private CastleRights currentCastleRights;
+    public final List<Move> moveLog;  // Move view of moveHistory
+    private final MoveList moveHistory;  // packed moves
+    private int[] castleRightsLog;  // castle rights bits after each ply, index 0 is the starting position
+    private int[] enPassantLog;  // en passant square after each ply
+    private int[] halfmoveClockLog;  // halfmove clock after each ply
+    private long zobristKey;  // hash of the position, updated incrementally
+    private long pawnKey;  // hash of the pawns alone, for caching pawn structure
+    private int middlegameScore;  // PieceSquareTables sums over the board, updated incrementally like the key
+    private int endgameScore;
+    private int phase;
+    private long[] zobristLog;  // key after each ply, for repetition detection
+    private int enPassantSquare;  // square a pawn can capture onto en passant, -1 if none
+    private int halfmoveClock;  // plies since the last capture or pawn move
+    private final CastleRights currentCastleRights;
     public boolean checkMate;
     public boolean staleMate;
-    private List<PinOrCheck> pins;
-    private List<PinOrCheck> checks;
     private boolean inCheck;
-    public record PinsAndChecks(boolean inCheck, List<PinOrCheck> pins, List<PinOrCheck> checks) {}
+    private GameListener listener = GameListener.NONE;
+    private GameStatus status;  // memoized by getStatus, reset by makeMove and undoMove
+    private Position snapshot;  // memoized by snapshot, reset by makeMove and undoMove
+    private Position.History snapshotHistory;  // history of the last snapshot taken
+    private int snapshotHistoryValid;  // how much of snapshotHistory is still this game's history
+    private boolean publishSnapshots;
+    private volatile Position published;
+    private final int startFullmoveNumber;  // move number of the starting position, for toFen
+
+    // Legality masks for the side to move, worked out at the start of getValidMoves
+    private long checkers;  // enemy pieces giving check
+    private long checkMask;  // where a non-king move must land: on the checker or between it and the king, else anywhere
+    private long pinnedPieces;
+    private final long[] pinRays = new long[64];  // for a pinned piece, the squares it can move to and stay pinned
+    private long kingDangerSquares;  // squares the opponent attacks, looking through our king
+    private boolean legalityMasksValid;  // masks belong to the current position, reset by makeMove and undoMove
+    private final MoveList pieceMoves = new MoveList(32);  // scratch list for isLegalMove
+
+    // Which moves the generators produce, so a search can take captures and quiet moves separately
+    private static final long PROMOTION_ROWS = 0xFFL | 0xFFL << 56;
+    private long stageTargets = -1L;  // squares a piece may move to in this stage
+    private long pawnStageTargets = -1L;  // the same for pawns, whose promotions count as captures
+    private boolean enPassantInStage = true;
+    private boolean castlesInStage = true;
 
 
 
@@ -30,7 +67,7 @@ public class GameState {
     public GameState() {
 
         // String Pool efficiency
-        this.board = new String[][] {
+        this(new String[][] {
             {"bR", "bN", "bB", "bQ", "bK", "bB", "bN", "bR"},
             {"bp", "bp", "bp", "bp", "bp", "bp", "bp", "bp"},
             {"--", "--", "--", "--", "--", "--", "--", "--"},
@@ -39,23 +76,377 @@ public class GameState {
             {"--", "--", "--", "--", "--", "--", "--", "--"},
             {"wp", "wp", "wp", "wp", "wp", "wp", "wp", "wp"},
             {"wR", "wN", "wB", "wQ", "wK", "wB", "wN", "wR"}
-        };
-        this.whiteToMove = true;
-        this.whiteKingLocation = new Square(4, 7);  // (col, row)
-        this.blackKingLocation = new Square(4, 0);  // (col, row)
+        }, true, new CastleRights(true, true, true, true), -1, 0, 1);
+    }
+
+    /**
+     * Game starting from an arbitrary position, see fromFen.
+     */
+    private GameState(String[][] board, boolean whiteToMove, CastleRights castleRights, int enPassantSquare,
+                      int halfmoveClock, int fullmoveNumber) {
+        this.board = board;
+        this.whiteToMove = whiteToMove;
         this.checkMate = false;
         this.staleMate = false;
 
-        this.moveLog = new ArrayList<Move>();
+        this.moveHistory = new MoveList();
+        this.moveLog = moveLogView();
 
-        this.currentCastleRights = new CastleRights(true, true, true, true);
-        this.castleRightsLog = new ArrayList<CastleRights>(Collections.singleton(this.currentCastleRights));
+        this.currentCastleRights = castleRights;
+        this.castleRightsLog = new int[256];
 
-        this.enPassantPossible = null;
-        this.enPassantLog = new ArrayList<Square>(Collections.singleton(this.enPassantPossible));
+        this.enPassantSquare = enPassantSquare;
+        this.enPassantLog = new int[256];
+        this.zobristLog = new long[256];
 
-        this.checkMate = false;
-        this.staleMate = false;
+        this.halfmoveClock = halfmoveClock;
+        this.halfmoveClockLog = new int[256];
+        this.startFullmoveNumber = fullmoveNumber;
+
+        initBitboards();
+        this.zobristKey = computeZobristKey();
+        this.pawnKey = computePawnKey();
+        logState();
+    }
+
+    /**
+     * Game starting from a position in Forsyth-Edwards Notation, e.g.
+     * "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1".
+     * The move counters are optional and default to 0 and 1. Castling rights that the king and
+     * rooks aren't placed for are dropped; positions that can't arise in a game (the side not to
+     * move in check, pawns on the first or last rank, an en passant square with no pawn that just
+     * moved past it) are rejected.
+     */
+    public static GameState fromFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4 || fields.length > 6) {
+            throw new IllegalArgumentException("FEN needs 4 to 6 fields: " + fen);
+        }
+
+        String[] ranks = fields[0].split("/");
+        if (ranks.length != 8) {
+            throw new IllegalArgumentException("FEN board needs 8 ranks: " + fen);
+        }
+        String[][] board = new String[8][8];
+        int[] kings = new int[2];
+        for (int r = 0; r < 8; r++) {  // FEN lists the 8th rank first, the same order as the board rows
+            int c = 0;
+            for (char ch : ranks[r].toCharArray()) {
+                if (ch >= '1' && ch <= '8') {
+                    if (c + (ch - '0') > 8) {
+                        throw new IllegalArgumentException("FEN rank " + (8 - r) + " doesn't have 8 squares: " + fen);
+                    }
+                    for (int empty = ch - '0'; empty > 0; empty--) {
+                        board[r][c++] = "--";
+                    }
+                } else if (c < 8) {
+                    int color = Character.isUpperCase(ch) ? WHITE : BLACK;
+                    int type = pieceType(ch == 'p' || ch == 'P' ? 'p' : Character.toUpperCase(ch));  // throws for an unknown letter
+                    if (type == PAWN && (r == 0 || r == 7)) {
+                        throw new IllegalArgumentException("FEN has a pawn on rank " + (8 - r) + ": " + fen);
+                    }
+                    board[r][c++] = PIECE_CODES[color * 6 + type];
+                    if (type == KING) {
+                        kings[color]++;
+                    }
+                } else {
+                    c++;
+                }
+            }
+            if (c != 8) {
+                throw new IllegalArgumentException("FEN rank " + (8 - r) + " doesn't have 8 squares: " + fen);
+            }
+        }
+        if (kings[WHITE] != 1 || kings[BLACK] != 1) {
+            throw new IllegalArgumentException("FEN needs one king of each color: " + fen);
+        }
+
+        boolean whiteToMove = switch (fields[1]) {
+            case "w" -> true;
+            case "b" -> false;
+            default -> throw new IllegalArgumentException("FEN side to move must be w or b: " + fen);
+        };
+
+        CastleRights castleRights = new CastleRights(false, false, false, false);
+        if (!fields[2].equals("-")) {
+            for (char ch : fields[2].toCharArray()) {
+                switch (ch) {
+                    case 'K' -> castleRights.wks = true;
+                    case 'Q' -> castleRights.wqs = true;
+                    case 'k' -> castleRights.bks = true;
+                    case 'q' -> castleRights.bqs = true;
+                    default -> throw new IllegalArgumentException("FEN castling rights must be - or from KQkq: " + fen);
+                }
+            }
+            // Only rights the king and rook are still home for, castling assumes they are
+            castleRights.wks &= board[7][4].equals("wK") && board[7][7].equals("wR");
+            castleRights.wqs &= board[7][4].equals("wK") && board[7][0].equals("wR");
+            castleRights.bks &= board[0][4].equals("bK") && board[0][7].equals("bR");
+            castleRights.bqs &= board[0][4].equals("bK") && board[0][0].equals("bR");
+        }
+
+        int enPassantSquare = -1;
+        if (!fields[3].equals("-")) {
+            String ep = fields[3];
+            if (ep.length() != 2 || ep.charAt(0) < 'a' || ep.charAt(0) > 'h' || ep.charAt(1) != (whiteToMove ? '6' : '3')) {
+                throw new IllegalArgumentException("FEN en passant square must be - or on the "
+                                                   + (whiteToMove ? "6th" : "3rd") + " rank: " + fen);
+            }
+            int r = '8' - ep.charAt(1);
+            int c = ep.charAt(0) - 'a';
+            // The pawn that just moved two squares stands in front of it, having passed over it
+            int forward = whiteToMove ? 1 : -1;
+            if (!board[r + forward][c].equals(whiteToMove ? "bp" : "wp") || !board[r][c].equals("--")
+                || !board[r - forward][c].equals("--")) {
+                throw new IllegalArgumentException("FEN en passant square has no pawn that just moved past it: " + fen);
+            }
+            enPassantSquare = square(r, c);
+        }
+
+        int halfmoveClock;
+        int fullmoveNumber;
+        try {
+            halfmoveClock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+            fullmoveNumber = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("FEN move counters must be numbers: " + fen, e);
+        }
+        GameState gameState = new GameState(board, whiteToMove, castleRights, enPassantSquare, halfmoveClock, fullmoveNumber);
+
+        // Otherwise the side to move could capture the king, which nothing else expects
+        int opponent = whiteToMove ? BLACK : WHITE;
+        if (gameState.isSquareAttacked(gameState.kingSquare(opponent), 1 - opponent, gameState.occupied)) {
+            throw new IllegalArgumentException("FEN side not to move is in check: " + fen);
+        }
+        return gameState;
+    }
+
+    /**
+     * The current position in Forsyth-Edwards Notation.
+     */
+    public String toFen() {
+        return snapshot().toFen();
+    }
+
+    /**
+     * Immutable copy of the current position and the moves that led to it, which any thread can
+     * read while this game goes on. Built on the first call after a move and shared until the next
+     * makeMove or undoMove; its history shares every move it has in common with the last snapshot.
+     * Call it on the thread playing the game, other threads can use getPublishedSnapshot.
+     */
+    public Position snapshot() {
+        if (snapshot == null) {
+            Position.History history = snapshotHistory;
+            while (Position.History.length(history) > snapshotHistoryValid) {  // drop moves undone since
+                history = history.previous;
+            }
+            for (int ply = Position.History.length(history); ply < moveHistory.size(); ply++) {
+                history = new Position.History(moveHistory.get(ply), history);
+            }
+            snapshotHistory = history;
+            snapshotHistoryValid = moveHistory.size();
+            snapshot = new Position(mailbox, whiteToMove, currentCastleRights.toBits(), enPassantSquare,
+                                    halfmoveClock, fullmoveNumber(), zobristKey, history);
+        }
+        return snapshot;
+    }
+
+    /**
+     * With publishing on, every makeMove and undoMove publishes a new snapshot for
+     * getPublishedSnapshot. Costs a snapshot per move, so leave it off for games a search plays on.
+     */
+    public void setPublishSnapshots(boolean publish) {
+        this.publishSnapshots = publish;
+        this.published = publish ? snapshot() : null;
+    }
+
+    /**
+     * The snapshot published after the last move, null if publishing is off. Safe to call from any thread.
+     */
+    public Position getPublishedSnapshot() {
+        return published;
+    }
+
+    private int fullmoveNumber() {
+        int plies = moveHistory.size();
+        boolean whiteStarted = whiteToMove == (plies % 2 == 0);
+        return startFullmoveNumber + (plies + (whiteStarted ? 0 : 1)) / 2;
+    }
+
+    /**
+     * Sends game events to the listener, GameListener.NONE to stop.
+     */
+    public void setListener(GameListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Independent copy of another game, history included, e.g. for a search thread to play on.
+     * The listener isn't copied, the copy starts with none.
+     */
+    public GameState(GameState other) {
+        this.board = new String[8][];
+        for (int r = 0; r < 8; r++) {
+            this.board[r] = other.board[r].clone();
+        }
+        System.arraycopy(other.mailbox, 0, this.mailbox, 0, 64);
+        System.arraycopy(other.pieceBitboards, 0, this.pieceBitboards, 0, 12);
+        System.arraycopy(other.colorBitboards, 0, this.colorBitboards, 0, 2);
+        this.occupied = other.occupied;
+        this.middlegameScore = other.middlegameScore;
+        this.endgameScore = other.endgameScore;
+        this.phase = other.phase;
+
+        this.whiteToMove = other.whiteToMove;
+        this.checkMate = other.checkMate;
+        this.staleMate = other.staleMate;
+
+        this.moveHistory = new MoveList(other.moveHistory);
+        this.moveLog = moveLogView();
+
+        CastleRights rights = other.currentCastleRights;
+        this.currentCastleRights = new CastleRights(rights.wks, rights.bks, rights.wqs, rights.bqs);
+        this.castleRightsLog = other.castleRightsLog.clone();
+
+        this.enPassantSquare = other.enPassantSquare;
+        this.enPassantLog = other.enPassantLog.clone();
+        this.halfmoveClock = other.halfmoveClock;
+        this.halfmoveClockLog = other.halfmoveClockLog.clone();
+
+        this.zobristKey = other.zobristKey;
+        this.pawnKey = other.pawnKey;
+        this.zobristLog = other.zobristLog.clone();
+        this.status = other.status;  // immutable, so it can be shared
+        this.snapshot = other.snapshot;
+        this.snapshotHistory = other.snapshotHistory;
+        this.snapshotHistoryValid = other.snapshotHistoryValid;
+
+        this.startFullmoveNumber = other.startFullmoveNumber;
+    }
+
+    /**
+     * Read only List<Move> over the packed history, boxes moves on demand.
+     */
+    private List<Move> moveLogView() {
+        return new AbstractList<Move>() {
+            @Override
+            public Move get(int index) {
+                return PackedMove.toMove(moveHistory.get(index));
+            }
+
+            @Override
+            public int size() {
+                return moveHistory.size();
+            }
+        };
+    }
+
+    /**
+     * Builds the piece bitboards from the string board.
+     */
+    private void initBitboards() {
+        Arrays.fill(pieceBitboards, 0L);
+        Arrays.fill(colorBitboards, 0L);
+        middlegameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                int piece = pieceIndex(board[r][c]);
+                mailbox[square(r, c)] = piece >= 0 ? piece : NO_PIECE;
+                if (piece >= 0) {
+                    pieceBitboards[piece] |= 1L << square(r, c);
+                    colorBitboards[piece / 6] |= 1L << square(r, c);
+                    middlegameScore += PieceSquareTables.middlegame(piece, square(r, c));
+                    endgameScore += PieceSquareTables.endgame(piece, square(r, c));
+                    phase += PieceSquareTables.phase(piece);
+                }
+            }
+        }
+        occupied = colorBitboards[WHITE] | colorBitboards[BLACK];
+    }
+
+    /**
+     * Hashes the pawns from scratch, setSquare keeps pawnKey up to date after that.
+     */
+    private long computePawnKey() {
+        long key = 0L;
+        for (int sq = 0; sq < 64; sq++) {
+            if (mailbox[sq] != NO_PIECE && mailbox[sq] % 6 == PAWN) {
+                key ^= Zobrist.piece(mailbox[sq], sq);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Hashes the whole position from scratch. makeMove and undoMove keep zobristKey up to date
+     * incrementally, this is only needed when a position is set up.
+     */
+    private long computeZobristKey() {
+        long key = 0L;
+        for (int sq = 0; sq < 64; sq++) {
+            if (mailbox[sq] != NO_PIECE) {
+                key ^= Zobrist.piece(mailbox[sq], sq);
+            }
+        }
+        key ^= Zobrist.castleRights(currentCastleRights.toBits());
+        key ^= Zobrist.enPassant(enPassantSquare);
+        if (!whiteToMove) {
+            key ^= Zobrist.BLACK_TO_MOVE;
+        }
+        return key;
+    }
+
+    /**
+     * Puts a piece (or NO_PIECE) on a square, keeping the string board, mailbox and bitboards in sync.
+     */
+    private void setSquare(int r, int c, int piece) {
+        int sq = square(r, c);
+        long bit = 1L << sq;
+        int oldPiece = mailbox[sq];
+        if (oldPiece != NO_PIECE) {
+            pieceBitboards[oldPiece] &= ~bit;
+            colorBitboards[oldPiece / 6] &= ~bit;
+            zobristKey ^= Zobrist.piece(oldPiece, sq);
+            if (oldPiece % 6 == PAWN) {
+                pawnKey ^= Zobrist.piece(oldPiece, sq);
+            }
+            middlegameScore -= PieceSquareTables.middlegame(oldPiece, sq);
+            endgameScore -= PieceSquareTables.endgame(oldPiece, sq);
+            phase -= PieceSquareTables.phase(oldPiece);
+        }
+        if (piece != NO_PIECE) {
+            pieceBitboards[piece] |= bit;
+            colorBitboards[piece / 6] |= bit;
+            zobristKey ^= Zobrist.piece(piece, sq);
+            if (piece % 6 == PAWN) {
+                pawnKey ^= Zobrist.piece(piece, sq);
+            }
+            middlegameScore += PieceSquareTables.middlegame(piece, sq);
+            endgameScore += PieceSquareTables.endgame(piece, sq);
+            phase += PieceSquareTables.phase(piece);
+        }
+        occupied = colorBitboards[WHITE] | colorBitboards[BLACK];
+        mailbox[sq] = piece;
+        board[r][c] = piece == NO_PIECE ? "--" : PIECE_CODES[piece];
+    }
+
+    /**
+     * Records the castle rights, en passant square and halfmove clock for the current ply so undoMove can restore them.
+     */
+    private void logState() {
+        int ply = moveHistory.size();
+        if (ply == castleRightsLog.length) {
+            castleRightsLog = Arrays.copyOf(castleRightsLog, ply * 2);
+            enPassantLog = Arrays.copyOf(enPassantLog, ply * 2);
+            zobristLog = Arrays.copyOf(zobristLog, ply * 2);
+            halfmoveClockLog = Arrays.copyOf(halfmoveClockLog, ply * 2);
+        }
+        castleRightsLog[ply] = currentCastleRights.toBits();
+        enPassantLog[ply] = enPassantSquare;
+        zobristLog[ply] = zobristKey;
+        halfmoveClockLog[ply] = halfmoveClock;
     }
 
     /**
@@ -63,58 +454,67 @@ public class GameState {
      * @param move The move to be executed.
      */
     public void makeMove(Move move) {
-        board[move.start().row()][move.start().col()] = "--";
-        board[move.end().row()][move.end().col()] = move.pieceMoved();
-        moveLog.add(move);
-
-        // update king's location
-        if (move.pieceMoved().equals("wK")) {
-            this.whiteKingLocation = new Square(move.end().col(), move.end().row());
-        } else if (move.pieceMoved().equals("bK")) {
-            this.blackKingLocation = new Square(move.end().col(), move.end().row());
-        }
+        makeMove(PackedMove.fromMove(move));
+    }
 
-        if (move.isPawnPromotion()) {
-            board[move.end().row()][move.end().col()] = "" + move.pieceMoved().charAt(0) + 'Q';
+    /**
+     * Executes a packed move (see PackedMove) on the board.
+     */
+    public void makeMove(int move) {
+        int start = PackedMove.start(move);
+        int end = PackedMove.end(move);
+        int pieceMoved = PackedMove.pieceMoved(move);
+        int startRow = start >>> 3, startCol = start & 7;
+        int endRow = end >>> 3, endCol = end & 7;
+
+        // Board changes are hashed in setSquare, the rest of the state is hashed below
+        long stateKeyBefore = Zobrist.castleRights(currentCastleRights.toBits()) ^ Zobrist.enPassant(enPassantSquare);
+
+        setSquare(startRow, startCol, NO_PIECE);
+        setSquare(endRow, endCol, pieceMoved);
+        moveHistory.add(move);
+
+        if (PackedMove.isPromotion(move)) {
+            setSquare(endRow, endCol, PackedMove.promotion(move));
         }
 
-        if (move.pieceMoved().charAt(1) == 'p' && abs(move.start().row() - move.end().row()) == 2) {  // if a pawn moves 2 squares
-            this.enPassantPossible = new Square(move.start().col(), (move.start().row() + move.end().row()) / 2 );  // enpassant possible to the square where the pawn would have moved if it had only moved 1 square.
-            System.out.println("enpassant possible: " + this.enPassantPossible);
+        if (PackedMove.isDoublePush(move)) {  // if a pawn moves 2 squares
+            this.enPassantSquare = (start + end) / 2;  // enpassant possible to the square where the pawn would have moved if it had only moved 1 square.
+            listener.enPassantAvailable(enPassantSquare);
         } else {
-            this.enPassantPossible = null;
+            this.enPassantSquare = -1;
         }
 
-        if (move.isEnpassantMove()) {
-            board[move.start().row()][move.end().col()] = "--";
+        if (PackedMove.isEnpassantMove(move)) {
+            setSquare(startRow, endCol, NO_PIECE);
         }
 
-        if (move.isCastleMove()) {
-            if (move.end().col() - move.start().col() == 2) { // kingside
-                board[move.end().row()][move.end().col() - 1] = board[move.end().row()][move.end().col() + 1];  // copy the rook to the new square
-                board[move.end().row()][move.end().col() + 1] = "--";  // remove the old rook
+        if (PackedMove.isCastleMove(move)) {
+            if (endCol - startCol == 2) { // kingside
+                setSquare(endRow, endCol - 1, mailbox[square(endRow, endCol + 1)]);  // copy the rook to the new square
+                setSquare(endRow, endCol + 1, NO_PIECE);  // remove the old rook
             } else
-            if (move.end().col() - move.start().col() == -2) {  // queenside
-                board[move.end().row()][move.end().col() + 1] = board[move.end().row()][move.end().col() - 2];  // copy the rook to the new square
-                board[move.end().row()][move.end().col() - 2] = "--";  // remove the old rook
+            if (endCol - startCol == -2) {  // queenside
+                setSquare(endRow, endCol + 1, mailbox[square(endRow, endCol - 2)]);  // copy the rook to the new square
+                setSquare(endRow, endCol - 2, NO_PIECE);  // remove the old rook
             }
         }
 
         updateCastleRights(move);
-        this.castleRightsLog.add(new CastleRights(currentCastleRights.wks, currentCastleRights.bks, currentCastleRights.wqs, currentCastleRights.bqs));
-
-        this.enPassantLog.add(this.enPassantPossible);
+        halfmoveClock = PackedMove.isCapture(move) || pieceMoved % 6 == PAWN ? 0 : halfmoveClock + 1;
 
         whiteToMove = !whiteToMove; // Swap turns
-
-        System.out.println("Move executed: " + move.pieceMoved() + " to " + move.end().col() + "," + move.end().row());
-        System.out.println();
-
-        if (whiteToMove) {
-            System.out.println("White to move");
-        } else {
-            System.out.println("Black to move");
+        zobristKey ^= stateKeyBefore ^ Zobrist.castleRights(currentCastleRights.toBits()) ^ Zobrist.enPassant(enPassantSquare)
+                      ^ Zobrist.BLACK_TO_MOVE;
+        logState();
+        legalityMasksValid = false;
+        status = null;
+        snapshot = null;
+        if (publishSnapshots) {
+            published = snapshot();
         }
+
+        listener.moveMade(move, moveHistory.size());
     }
 
 
@@ -122,224 +522,289 @@ public class GameState {
      * All moves considering check
      */
     public ArrayList<Move> getValidMoves() {
-        ArrayList<Move> moves = new ArrayList<>();
-        PinsAndChecks result = checkForPinsAndChecks();
-        this.inCheck = result.inCheck();
-        this.pins = result.pins();
-        this.checks = result.checks();
-
-        int kingCol, kingRow;
-        if (whiteToMove) {
-            kingCol = whiteKingLocation.col();
-            kingRow = whiteKingLocation.row();
-        } else {
-            kingCol = blackKingLocation.col();
-            kingRow = blackKingLocation.row();
-        }
-
-        if (inCheck) {
-            if (checks.size() == 1) {  // Only 1 check: block check or move king
-                moves = getAllPossibleMoves();
-                PinOrCheck check = checks.getFirst();  // (pos dir-col, dir-row)
-                int checkCol = check.pos().col();
-                int checkRow = check.pos().row();
-                String pieceChecking = board[checkRow][checkCol];
-                List<Square> validSquares = new ArrayList<>();
-
-                if (pieceChecking.charAt(1) == 'N') {  // If knight, must capture knight or move king
-                    validSquares.add(new Square(checkCol, checkRow));
-                } else {  // Else block the check
-                    for (int i = 1; i < 8; i++) {
-                        Square validSquare = new Square(kingCol + check.dirCol() * i,
-                                                        kingRow + check.dirRow() * i);
-                        validSquares.add(validSquare);
-                        if (validSquare.col() == checkCol && validSquare.row() == checkRow) {  // Go up to the check square
-                            break;
-                        }
-                    }
-                }
+        MoveList moves = new MoveList();
+        getValidMoves(moves);
+        return moves.toMoves();
+    }
 
-                // Get rid of any moves that don't block check or move king
-                for (int i = moves.size() - 1; i >= 0; i--) {  // Go through backwards when removing from a list
-                    if (moves.get(i).pieceMoved().charAt(1) != 'K') {  // Move doesn't move king, so must block or capture
-                        Square endSquare = moves.get(i).end();
-                        if (!validSquares.contains(endSquare)) {
-                            moves.remove(i);
-                        }
-                    }
-                }
-            } else {  // Double check, king has to move
-                getKingMoves(kingRow, kingCol, moves);
-            }
-        } else {  // Not in check so all moves are fine
-            moves = getAllPossibleMoves();
+    /**
+     * Legal moves and check/mate/stalemate flags of the current position. Generated on the first
+     * call after a move and shared until the next makeMove or undoMove, so repeated calls are free.
+     */
+    public GameStatus getStatus() {
+        if (status == null) {
+            MoveList moves = new MoveList();
+            getValidMoves(moves);
+            status = new GameStatus(moves, whiteToMove, inCheck);
         }
+        return status;
+    }
 
-        // To generate castle moves
-        if (whiteToMove) {
-            getCastleMoves(7, 4, moves);  // Can only castle if the king hasn't moved
-        } else {
-            getCastleMoves(0, 4, moves);
+    /**
+     * All moves considering check, packed into the given list (which is cleared first).
+     */
+    public void getValidMoves(MoveList moves) {
+        moves.clear();
+        setStage(-1L, -1L, true, true);
+        generateLegalMoves(moves);
+        if (EngineMetrics.MOVEGEN) {
+            EngineMetrics.get().recordValidMoves(moves.size());
         }
 
-        return moves;
+        checkMate = moves.isEmpty() && inCheck;
+        staleMate = moves.isEmpty() && !inCheck;
+        if (moves.isEmpty()) {
+            listener.gameOver(checkMate, whiteToMove);
+        }
     }
 
     /**
-     * Returns if the player is in check, a list of pins, and a list of checks
+     * Legal captures, en passant and promotions (quiet ones included), added to the list. Together
+     * with getValidQuietMoves this is getValidMoves in two stages, for callers that hope to be done
+     * before they need the quiet moves.
      */
-    public PinsAndChecks checkForPinsAndChecks() {
-        List<PinOrCheck> pins = new ArrayList<>();  // Square of pinned piece & direction pinned from
-        List<PinOrCheck> checks = new ArrayList<>();  // Squares where enemy is applying a check
-        boolean inCheck = false;
+    public void getValidCaptures(MoveList moves) {
+        long enemyPieces = colorBitboards[whiteToMove ? BLACK : WHITE];
+        setStage(enemyPieces, enemyPieces | PROMOTION_ROWS, true, false);
+        generateLegalMoves(moves);
+    }
 
-        char enemyColor, allyColor;
-        int startCol, startRow;
+    /**
+     * Legal moves that neither capture nor promote, castling included, added to the list.
+     */
+    public void getValidQuietMoves(MoveList moves) {
+        setStage(~occupied, ~occupied & ~PROMOTION_ROWS, false, true);
+        generateLegalMoves(moves);
+    }
 
-        if (whiteToMove) {
-            enemyColor = 'b';
-            allyColor = 'w';
-            startCol = whiteKingLocation.col();
-            startRow = whiteKingLocation.row();
-        } else {
-            enemyColor = 'w';
-            allyColor = 'b';
-            startCol = blackKingLocation.col();
-            startRow = blackKingLocation.row();
-        }
-
-        // Check outward from king for pins and checks, keep track of pins. Pin direction is OUTWARD from the KING
-        int[][] directions = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}, {-1, -1}, {1, -1}, {-1, 1}, {1, 1}};
-        // (col, row): l, r, u, d, lu, ru, ld, rd
-
-        for (int j = 0; j < directions.length; j++) {
-            int[] d = directions[j];
-            PinOrCheck possiblePin = null;  // Reset possible pin for said direction
-
-            for (int i = 1; i < 8; i++) {  // Up until the end of the board
-                int endCol = startCol + d[0] * i;
-                int endRow = startRow + d[1] * i;
-
-                if (endRow >= 0 && endRow < 8 && endCol >= 0 && endCol < 8) {
-                    String endPiece = board[endRow][endCol];
-
-                    // Check for pins
-                    if (endPiece.charAt(0) == allyColor && endPiece.charAt(1) != 'K') {
-                        if (possiblePin == null) {  // 1st allied piece could be pinned
-                            possiblePin = new PinOrCheck(new Square(endCol, endRow), d[0], d[1]);
-                        } else {  // 2nd allied piece, so no pin or check possible in this direction
-                            break;
-                        }
-                    }
-                    // Check for checks
-                    else if (endPiece.charAt(0) == enemyColor) {
-                        char piece = endPiece.charAt(1);
-
-                        // Orthogonally from king & piece == rook
-                        // Diagonally & piece == bishop
-                        // 1 square away & piece == pawn
-                        // Any direction & piece == queen
-                        // Any direction 1 square away & piece == king
-                        if ((0 <= j && j <= 3 && piece == 'R') ||
-                            (4 <= j && j <= 7 && piece == 'B') ||
-                            (i == 1 && piece == 'p' && ((enemyColor == 'w' && 6 <= j && j <= 7) ||
-                                                         (enemyColor == 'b' && 4 <= j && j <= 5))) ||
-                            (piece == 'Q') ||
-                            (i == 1 && piece == 'K')) {
-
-                            if (possiblePin == null) {  // If enemy piece in range and no pin, inCheck = true
-                                inCheck = true;
-                                checks.add(new PinOrCheck(new Square(endCol, endRow), d[0], d[1]));
-                                break;
-                            } else {  // Allied piece blocking so pin
-                                pins.add(possiblePin);
-                                break;
-                            }
-                        } else {  // Enemy piece not applying check
-                            break;
-                        }
-                    }
-                } else {  // Off board
-                    break;
-                }
+    /**
+     * True if a packed move, e.g. one remembered from another position, is legal here.
+     * Only generates the moving piece's moves.
+     */
+    public boolean isLegalMove(int move) {
+        int start = PackedMove.start(move);
+        int end = PackedMove.end(move);
+        int pieceMoved = PackedMove.pieceMoved(move);
+        if (move == PackedMove.NONE || mailbox[start] != pieceMoved || pieceMoved / 6 != (whiteToMove ? WHITE : BLACK)
+            || (!PackedMove.isEnpassantMove(move) && mailbox[end] != PackedMove.pieceCaptured(move))) {
+            return false;
+        }
+
+        updateLegalityMasksIfNeeded();
+        setStage(-1L, -1L, true, true);
+        MoveList pieceMoves = this.pieceMoves;
+        pieceMoves.clear();
+        int r = start >>> 3;
+        int c = start & 7;
+        if (PackedMove.isCastleMove(move)) {
+            getCastleMoves(r, c, pieceMoves);
+        } else if (pieceMoved % 6 == KING) {
+            getKingMoves(r, c, pieceMoves);
+        } else if (Long.bitCount(checkers) <= 1) {
+            switch (pieceMoved % 6) {
+                case PAWN -> getPawnMoves(r, c, pieceMoves);
+                case KNIGHT -> getKnightMoves(r, c, pieceMoves);
+                case BISHOP -> getBishopMoves(r, c, pieceMoves);
+                case ROOK -> getRookMoves(r, c, pieceMoves);
+                case QUEEN -> getQueenMoves(r, c, pieceMoves);
+            }
+        }
+        return pieceMoves.contains(move);
+    }
+
+    /**
+     * The legal move from start to end, promoting to promotionType (a piece type, only looked at
+     * when a pawn reaches the last rank), or NONE if there is none. The packed move is filled in
+     * from the board and checked with isLegalMove, so only the moving piece's moves are generated.
+     */
+    public int legalMove(int start, int end, int promotionType) {
+        int piece = mailbox[start];
+        if (piece == NO_PIECE || piece / 6 != (whiteToMove ? WHITE : BLACK)) {
+            return PackedMove.NONE;
+        }
+        int captured = mailbox[end];
+        int promotion = NO_PIECE;
+        int flags = 0;
+        if (piece % 6 == PAWN) {
+            if (end == enPassantSquare && (end & 7) != (start & 7)) {
+                captured = (1 - piece / 6) * 6 + PAWN;
+                flags = PackedMove.FLAG_EN_PASSANT;
+            } else if (Math.abs(end - start) == 16) {
+                flags = PackedMove.FLAG_DOUBLE_PUSH;
+            }
+            if ((end >>> 3) == 0 || (end >>> 3) == 7) {
+                promotion = piece - PAWN + promotionType;  // still a pawn if none was given, which is never legal
             }
+        } else if (piece % 6 == KING && start == square(whiteToMove ? 7 : 0, 4) && Math.abs(end - start) == 2) {
+            flags = PackedMove.FLAG_CASTLE;  // e1/e8 to g or c on the same rank
         }
+        int move = PackedMove.encode(start, end, piece, captured, promotion, flags);
+        return isLegalMove(move) ? move : PackedMove.NONE;
+    }
 
-        // Knight checks
-        int[][] knightMoves = {{-1, -2}, {-2, -1}, {-2, 1}, {-1, 2},
-                               {1, 2}, {2, 1}, {2, -1}, {1, -2}};
-        for (int[] m : knightMoves) {
-            int endCol = startCol + m[0];
-            int endRow = startRow + m[1];
+    private void setStage(long targets, long pawnTargets, boolean enPassant, boolean castles) {
+        stageTargets = targets;
+        pawnStageTargets = pawnTargets;
+        enPassantInStage = enPassant;
+        castlesInStage = castles;
+    }
 
-            if (endCol >= 0 && endCol < 8 && endRow >= 0 && endRow < 8) {
-                String endPiece = board[endRow][endCol];
-                if (endPiece.charAt(0) == enemyColor && endPiece.charAt(1) == 'N') {  // Enemy knight attacking king
-                    inCheck = true;
-                    checks.add(new PinOrCheck(new Square(endCol, endRow), m[0], m[1]));
-                }
+    /**
+     * Adds the legal moves allowed by the current stage.
+     */
+    private void generateLegalMoves(MoveList moves) {
+        updateLegalityMasksIfNeeded();
+
+        if (Long.bitCount(checkers) > 1) {  // Double check, king has to move
+            int kingSq = kingSquare(whiteToMove ? WHITE : BLACK);
+            getKingMoves(kingSq >>> 3, kingSq & 7, moves);
+        } else {  // Otherwise the masks restrict every piece to moves that block, capture or keep a pin
+            generateMoves(moves);
+        }
+
+        // To generate castle moves
+        if (castlesInStage) {
+            if (whiteToMove) {
+                getCastleMoves(7, 4, moves);  // Can only castle if the king hasn't moved
+            } else {
+                getCastleMoves(0, 4, moves);
             }
         }
+    }
 
-        return new PinsAndChecks(inCheck, pins, checks);
+    private void updateLegalityMasksIfNeeded() {
+        if (!legalityMasksValid) {
+            updateLegalityMasks();
+            legalityMasksValid = true;
+        }
     }
 
+    /**
+     * Works out once per position which squares a non-king move must land on to answer a check,
+     * which pieces are pinned and along which ray, and which squares the king can't step onto.
+     * After this every candidate move is legal-tested with a single AND in the generators.
+     */
+    private void updateLegalityMasks() {
+        int us = whiteToMove ? WHITE : BLACK;
+        int them = 1 - us;
+        int enemy = them * 6;
+        int kingSq = kingSquare(us);
+        long enemyRooks = pieceBitboards[enemy + ROOK] | pieceBitboards[enemy + QUEEN];
+        long enemyBishops = pieceBitboards[enemy + BISHOP] | pieceBitboards[enemy + QUEEN];
+
+        checkers = (KNIGHT_ATTACKS[kingSq] & pieceBitboards[enemy + KNIGHT])
+                   | (PAWN_ATTACKS[us][kingSq] & pieceBitboards[enemy + PAWN])
+                   | (Magics.rookAttacks(kingSq, occupied) & enemyRooks)
+                   | (Magics.bishopAttacks(kingSq, occupied) & enemyBishops);
+        inCheck = checkers != 0;
+        checkMask = inCheck ? checkers | BETWEEN[kingSq][Long.numberOfTrailingZeros(checkers)] : -1L;
+
+        // An enemy slider that would see the king through exactly one of our pieces pins it
+        pinnedPieces = 0L;
+        long snipers = (Magics.rookAttacks(kingSq, colorBitboards[them]) & enemyRooks)
+                       | (Magics.bishopAttacks(kingSq, colorBitboards[them]) & enemyBishops);
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = BETWEEN[kingSq][sniper] & occupied;
+            if (Long.bitCount(blockers) == 1 && (blockers & colorBitboards[us]) != 0) {
+                pinnedPieces |= blockers;
+                pinRays[Long.numberOfTrailingZeros(blockers)] = BETWEEN[kingSq][sniper] | 1L << sniper;
+            }
+        }
 
+        // Without our king in the way, so it can't step back along the ray of a slider checking it
+        kingDangerSquares = attackedSquares(them, occupied & ~pieceBitboards[us * 6 + KING]);
+    }
 
+    /**
+     * Every square a color attacks, given the occupancy.
+     */
+    private long attackedSquares(int color, long occupancy) {
+        int first = color * 6;
+        long attacks = KING_ATTACKS[kingSquare(color)];
+
+        long pawns = pieceBitboards[first + PAWN];
+        while (pawns != 0) {
+            attacks |= PAWN_ATTACKS[color][Long.numberOfTrailingZeros(pawns)];
+            pawns &= pawns - 1;
+        }
+        long knights = pieceBitboards[first + KNIGHT];
+        while (knights != 0) {
+            attacks |= KNIGHT_ATTACKS[Long.numberOfTrailingZeros(knights)];
+            knights &= knights - 1;
+        }
+        long diagonalSliders = pieceBitboards[first + BISHOP] | pieceBitboards[first + QUEEN];
+        while (diagonalSliders != 0) {
+            attacks |= Magics.bishopAttacks(Long.numberOfTrailingZeros(diagonalSliders), occupancy);
+            diagonalSliders &= diagonalSliders - 1;
+        }
+        long straightSliders = pieceBitboards[first + ROOK] | pieceBitboards[first + QUEEN];
+        while (straightSliders != 0) {
+            attacks |= Magics.rookAttacks(Long.numberOfTrailingZeros(straightSliders), occupancy);
+            straightSliders &= straightSliders - 1;
+        }
+        return attacks;
+    }
+
+    private int kingSquare(int color) {
+        return Long.numberOfTrailingZeros(pieceBitboards[color * 6 + KING]);
+    }
 
     /**
      * Undo the last move made
      */
     public void undoMove() {
-        if (!moveLog.isEmpty()) {  // Make sure that there is a move to undo
-            Move move = moveLog.remove(moveLog.size() - 1);  // Pop last move
-            board[move.start().row()][move.start().col()] = move.pieceMoved();
-            board[move.end().row()][move.end().col()] = move.pieceCaptured();
-
-            // Update king's location
-            if (move.pieceMoved().equals("wK")) {
-                whiteKingLocation = new Square(move.start().col(), move.start().row());
-            } else if (move.pieceMoved().equals("bK")) {
-                blackKingLocation = new Square(move.start().col(), move.start().row());
-            }
+        if (!moveHistory.isEmpty()) {  // Make sure that there is a move to undo
+            int move = moveHistory.removeLast();  // Pop last move
+            int start = PackedMove.start(move);
+            int end = PackedMove.end(move);
+            int pieceMoved = PackedMove.pieceMoved(move);
+            int startRow = start >>> 3, startCol = start & 7;
+            int endRow = end >>> 3, endCol = end & 7;
+
+            setSquare(startRow, startCol, pieceMoved);
+            setSquare(endRow, endCol, PackedMove.pieceCaptured(move));
 
             whiteToMove = !whiteToMove;  // Swap players back
 
             // Undo en passant
-            if (move.isEnpassantMove()) {
-                board[move.end().row()][move.end().col()] = "--";  // Leave landing square blank
-                board[move.start().row()][move.end().col()] = move.pieceCaptured();
-                enPassantPossible = new Square(move.end().col(), move.end().row());
-            }
-
-            // Undo a 2 square pawn advance
-            if (move.pieceMoved().charAt(1) == 'p' &&
-                Math.abs(move.start().row() - move.end().row()) == 2) {
-                enPassantPossible = null;
+            if (PackedMove.isEnpassantMove(move)) {
+                setSquare(endRow, endCol, NO_PIECE);  // Leave landing square blank
+                setSquare(startRow, endCol, PackedMove.pieceCaptured(move));
             }
 
             // Undo castle move
-            if (move.isCastleMove()) {
-                if (move.end().col() - move.start().col() == 2) {  // Kingside
-                    board[move.end().row()][move.end().col() + 1] = board[move.end().row()][move.end().col() - 1];
-                    board[move.end().row()][move.end().col() - 1] = "--";  // Remove the old rook
-                } else if (move.end().col() - move.start().col() == -2) {  // Queenside
-                    board[move.end().row()][move.end().col() - 2] = board[move.end().row()][move.end().col() + 1];
-                    board[move.end().row()][move.end().col() + 1] = "--";  // Remove the old rook
+            if (PackedMove.isCastleMove(move)) {
+                if (endCol - startCol == 2) {  // Kingside
+                    setSquare(endRow, endCol + 1, mailbox[square(endRow, endCol - 1)]);
+                    setSquare(endRow, endCol - 1, NO_PIECE);  // Remove the old rook
+                } else if (endCol - startCol == -2) {  // Queenside
+                    setSquare(endRow, endCol - 2, mailbox[square(endRow, endCol + 1)]);
+                    setSquare(endRow, endCol + 1, NO_PIECE);  // Remove the old rook
                 }
             }
 
-            // Undo castling rights
-            castleRightsLog.removeLast();  // Get rid of castle rights from move we are undoing
-            CastleRights lastCastleRights = castleRightsLog.getLast();
-            currentCastleRights = new CastleRights(lastCastleRights.wks, lastCastleRights.bks, lastCastleRights.wqs, lastCastleRights.bqs);
-
-            enPassantLog.removeLast();
-            enPassantPossible = enPassantLog.getLast();
+            // Restore castling rights, en passant square and halfmove clock from before the move
+            int ply = moveHistory.size();
+            halfmoveClock = halfmoveClockLog[ply];
+            zobristKey ^= Zobrist.castleRights(currentCastleRights.toBits()) ^ Zobrist.enPassant(enPassantSquare);
+            currentCastleRights.setFromBits(castleRightsLog[ply]);
+            enPassantSquare = enPassantLog[ply];
+            zobristKey ^= Zobrist.castleRights(currentCastleRights.toBits()) ^ Zobrist.enPassant(enPassantSquare)
+                          ^ Zobrist.BLACK_TO_MOVE;
 
             checkMate = false;
             staleMate = false;
+            legalityMasksValid = false;
+            status = null;
+            snapshot = null;
+            snapshotHistoryValid = Math.min(snapshotHistoryValid, ply);
+            if (publishSnapshots) {
+                published = snapshot();
+            }
 
+            listener.moveUndone(move, ply);
         }
     }
 
@@ -347,105 +812,134 @@ public class GameState {
      * Returns all possible moves without considering if the King is in check.
      */
     public ArrayList<Move> getAllPossibleMoves() {
-        ArrayList<Move> moves = new ArrayList<>();
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                String piece = board[r][c];
-                char color = piece.charAt(0);
-
-                if ((color == 'w' && whiteToMove) || (color == 'b' && !whiteToMove)) {
-                    char pieceType = piece.charAt(1);
-                    switch (pieceType) {
-                        case 'p' -> getPawnMoves(r, c, moves);
-                        case 'R' -> getRookMoves(r, c, moves);
-                        case 'N' -> getKnightMoves(r, c, moves);
-                        case 'B' -> getBishopMoves(r, c, moves);
-                        case 'Q' -> getQueenMoves(r, c, moves);
-                        case 'K' -> getKingMoves(r, c, moves);
-                    }
+        MoveList moves = new MoveList();
+        getAllPossibleMoves(moves);
+        return moves.toMoves();
+    }
+
+    /**
+     * Adds all possible moves, without considering if the King is in check, to the list.
+     */
+    public void getAllPossibleMoves(MoveList moves) {
+        checkMask = -1L;
+        pinnedPieces = 0L;
+        kingDangerSquares = 0L;
+        legalityMasksValid = false;
+        setStage(-1L, -1L, true, true);
+        generateMoves(moves);
+    }
+
+    /**
+     * Adds the moves of every piece of the side to move, restricted by the legality masks.
+     */
+    private void generateMoves(MoveList moves) {
+        int firstPiece = whiteToMove ? WHITE * 6 : BLACK * 6;
+
+        for (int piece = firstPiece; piece < firstPiece + 6; piece++) {
+            long bitboard = pieceBitboards[piece];
+            while (bitboard != 0) {  // Pop each piece of this type off the bitboard
+                int sq = Long.numberOfTrailingZeros(bitboard);
+                bitboard &= bitboard - 1;
+                int r = sq >>> 3;
+                int c = sq & 7;
+
+                switch (piece - firstPiece) {
+                    case PAWN -> getPawnMoves(r, c, moves);
+                    case ROOK -> getRookMoves(r, c, moves);
+                    case KNIGHT -> getKnightMoves(r, c, moves);
+                    case BISHOP -> getBishopMoves(r, c, moves);
+                    case QUEEN -> getQueenMoves(r, c, moves);
+                    case KING -> getKingMoves(r, c, moves);
                 }
             }
         }
-        return moves;
     }
 
+    /**
+     * True if the opponent of the side to move attacks the square.
+     */
     public boolean squareUnderAttack(int r, int c) {
-        whiteToMove =! whiteToMove;
-        ArrayList<Move> oppMoves = getAllPossibleMoves();
-        whiteToMove =! whiteToMove;
-        for (Move oppMove : oppMoves) {
-            if (oppMove.end().row() == r && oppMove.end().col() == c) {
-                return true;
-            }
+        if (EngineMetrics.MOVEGEN) {
+            EngineMetrics.get().recordSquareUnderAttack();
         }
-        return false;
+        return isSquareAttacked(square(r, c), whiteToMove ? BLACK : WHITE, occupied);
+    }
+
+    /**
+     * Looks outward from the square for attackers instead of generating the attacker's moves:
+     * a knight, king or pawn attacks sq exactly when sq would attack it back with the same move
+     * (the pawn with the other color's capture), and sliders are found by casting the rook and
+     * bishop rays from sq through the given occupancy.
+     */
+    private boolean isSquareAttacked(int sq, int byColor, long occupancy) {
+        int first = byColor * 6;
+        long queens = pieceBitboards[first + QUEEN];
+        return (KNIGHT_ATTACKS[sq] & pieceBitboards[first + KNIGHT]) != 0
+               || (PAWN_ATTACKS[1 - byColor][sq] & pieceBitboards[first + PAWN]) != 0
+               || (KING_ATTACKS[sq] & pieceBitboards[first + KING]) != 0
+               || (Magics.bishopAttacks(sq, occupancy) & (pieceBitboards[first + BISHOP] | queens)) != 0
+               || (Magics.rookAttacks(sq, occupancy) & (pieceBitboards[first + ROOK] | queens)) != 0;
     }
 
     public boolean inCheck() {
-        if (whiteToMove) {
-            return squareUnderAttack(this.whiteKingLocation.row(), this.whiteKingLocation.col());
-        } else {
-            return squareUnderAttack(this.blackKingLocation.row(), blackKingLocation.col());
-        }
+        int kingSq = kingSquare(whiteToMove ? WHITE : BLACK);
+        return squareUnderAttack(kingSq >>> 3, kingSq & 7);
     }
 
-    public void updateCastleRights(Move move) {
+    public void updateCastleRights(int move) {
+    int pieceMoved = PackedMove.pieceMoved(move);
+    int start = PackedMove.start(move);
+    int end = PackedMove.end(move);
+
     // Check if the king moved or the rook moved
-    if (move.pieceMoved().equals("wK")) {
+    if (pieceMoved == WHITE * 6 + KING) {
         this.currentCastleRights.wks = false;
         this.currentCastleRights.wqs = false;
-    } else if (move.pieceMoved().equals("bK")) {
+    } else if (pieceMoved == BLACK * 6 + KING) {
         this.currentCastleRights.bks = false;
         this.currentCastleRights.bqs = false;
-    } else if (move.pieceMoved().equals("wR")) {
-        if (move.start().row() == 7) {
-            if (move.start().col() == 0) {  // White's left rook
-                this.currentCastleRights.wqs = false;
-            }
-            if (move.start().col() == 7) {  // White's right rook
-                this.currentCastleRights.wks = false;
-            }
+    } else if (pieceMoved == WHITE * 6 + ROOK) {
+        if (start == square(7, 0)) {  // White's left rook
+            this.currentCastleRights.wqs = false;
         }
-    } else if (move.pieceMoved().equals("bR")) {
-        if (move.start().row() == 0) {
-            if (move.start().col() == 0) {  // Black's left rook
-                this.currentCastleRights.bqs = false;
-            }
-            if (move.start().col() == 7) {  // Black's right rook
-                this.currentCastleRights.bks = false;
-            }
+        if (start == square(7, 7)) {  // White's right rook
+            this.currentCastleRights.wks = false;
+        }
+    } else if (pieceMoved == BLACK * 6 + ROOK) {
+        if (start == square(0, 0)) {  // Black's left rook
+            this.currentCastleRights.bqs = false;
+        }
+        if (start == square(0, 7)) {  // Black's right rook
+            this.currentCastleRights.bks = false;
         }
     }
 
     // Check if a rook is captured
-    if (move.pieceCaptured().equals("wR")) {
-        if (move.end().row() == 7) {
-            if (move.end().col() == 0) {
-                this.currentCastleRights.wqs = false;
-            } else if (move.end().col() == 7) {
-                this.currentCastleRights.wks = false;
-            }
+    int pieceCaptured = PackedMove.pieceCaptured(move);
+    if (pieceCaptured == WHITE * 6 + ROOK) {
+        if (end == square(7, 0)) {
+            this.currentCastleRights.wqs = false;
+        } else if (end == square(7, 7)) {
+            this.currentCastleRights.wks = false;
         }
-    } else if (move.pieceCaptured().equals("bR")) {
-        if (move.end().row() == 0) {
-            if (move.end().col() == 0) {
-                this.currentCastleRights.bqs = false;
-            } else if (move.end().col() == 7) {
-                this.currentCastleRights.bks = false;
-                }
+    } else if (pieceCaptured == BLACK * 6 + ROOK) {
+        if (end == square(0, 0)) {
+            this.currentCastleRights.bqs = false;
+        } else if (end == square(0, 7)) {
+            this.currentCastleRights.bks = false;
             }
         }
     }
 
-    public void getCastleMoves(int r, int c, List<Move> moves) {
-        if (!whiteToMove && !blackKingLocation.equals(new Square(4, 0))) return;
-        if (whiteToMove && !whiteKingLocation.equals(new Square(4, 7))) return;
+    public void getCastleMoves(int r, int c, MoveList moves) {
+        if (c != 4 || r != (whiteToMove ? 7 : 0)) return;  // Only a king on its home square can castle
+        if (mailbox[square(r, c)] != (whiteToMove ? WHITE : BLACK) * 6 + KING) return;
         if (!(board[r][c - 1].equals("--") && board[r][c - 2].equals("--") && board[r][c - 3].equals("--")) &&
             !(board[r][c + 1].equals("--") && board[r][c + 2].equals("--"))) {
             return;  // If queenside and kingside blocked, return
         }
 
-        if (squareUnderAttack(r, c)) { return; }  // King can't escape check by castling.
+        if (inCheck) { return; }  // King can't escape check by castling.
         if ((whiteToMove && currentCastleRights.wks) || (!whiteToMove && currentCastleRights.bks)) {
             getKingSideCastleMoves(r, c, moves);
         }
@@ -454,217 +948,108 @@ public class GameState {
         }
     }
 
-    public void getKingSideCastleMoves(int r, int c, List<Move> moves) {
+    public void getKingSideCastleMoves(int r, int c, MoveList moves) {
+        if ((pieceBitboards[(whiteToMove ? WHITE : BLACK) * 6 + ROOK] & 1L << square(r, c + 3)) == 0) return;  // Rook isn't home
         if (board[r][c + 1].equals("--") && board[r][c + 2].equals("--")) {
-            if (!squareUnderAttack(r, c + 1) && !squareUnderAttack(r, c + 2)) {
-                moves.add(Move.castleMove(new Square(c, r), new Square(c + 2, r), board));
+            if ((kingDangerSquares & (1L << square(r, c + 1) | 1L << square(r, c + 2))) == 0) {
+                moves.add(PackedMove.encode(square(r, c), square(r, c + 2), mailbox[square(r, c)], NO_PIECE, NO_PIECE, PackedMove.FLAG_CASTLE));
             }
         }
     }
-    public void getQueenSideCastleMoves(int r, int c, List<Move> moves) {
+    public void getQueenSideCastleMoves(int r, int c, MoveList moves) {
+        if ((pieceBitboards[(whiteToMove ? WHITE : BLACK) * 6 + ROOK] & 1L << square(r, c - 4)) == 0) return;  // Rook isn't home
         if (board[r][c-1].equals("--") && board[r][c-2].equals("--") && board[r][c-3].equals("--")) {
-            if (!squareUnderAttack(r, c-1) && !squareUnderAttack(r, c-2)) {
-                moves.add(Move.castleMove(new Square(c, r), new Square(c-2, r), board));
+            if ((kingDangerSquares & (1L << square(r, c - 1) | 1L << square(r, c - 2))) == 0) {
+                moves.add(PackedMove.encode(square(r, c), square(r, c - 2), mailbox[square(r, c)], NO_PIECE, NO_PIECE, PackedMove.FLAG_CASTLE));
             }
         }
     }
 
 
-    public void getPawnMoves(int r, int c, List<Move> moves) {
-        boolean piecePinned = false;
-        int[] pinDirection = null;
-
-        // Check if piece is pinned
-        for (int i = pins.size() - 1; i >= 0; i--) {
-            PinOrCheck pin = pins.get(i);
-            if (pin.pos().col() == c && pin.pos().row() == r) {  // pins = (pos, dirCol, dirRow)
-                piecePinned = true;
-                pinDirection = new int[]{pin.dirCol(), pin.dirRow()};
-                pins.remove(i);
-                break;
+    public void getPawnMoves(int r, int c, MoveList moves) {
+        int sq = square(r, c);
+        int color = whiteToMove ? WHITE : BLACK;
+        int forward = whiteToMove ? -8 : 8;  // White pawns move up the board
+        int startRow = whiteToMove ? 6 : 1;
+        long enemyPieces = colorBitboards[whiteToMove ? BLACK : WHITE];
+
+        // Forward moves
+        long targets = 0L;
+        long oneStep = 1L << (sq + forward);
+        if ((occupied & oneStep) == 0) {
+            targets |= oneStep;
+            long twoSteps = 1L << (sq + 2 * forward);
+            if (r == startRow && (occupied & twoSteps) == 0) {
+                targets |= twoSteps;
             }
         }
 
-        // White pawn logic
-        if (whiteToMove) {
-            // Forward moves
-            if (board[r - 1][c].equals("--")) {
-                if (!piecePinned || Arrays.equals(pinDirection, new int[]{0, -1})) {
-                    moves.add(new Move(new Square(c, r), new Square(c, r - 1), board));
-                    if (r == 6 && board[r - 2][c].equals("--")) {
-                        moves.add(new Move(new Square(c, r), new Square(c, r - 2), board));
-                    }
-                }
-
-            }
-            // Capturing left
-            if (c - 1 >= 0) {
-                if (board[r - 1][c - 1].charAt(0) == 'b') {
-                    if (!piecePinned || Arrays.equals(pinDirection, new int[]{-1, -1})) {
-                        moves.add(new Move(new Square(c, r), new Square(c - 1, r - 1), board));
-                    }
-                } else if (new Square(c - 1, r - 1).equals(this.enPassantPossible) && board[r][c - 1].charAt(0) == 'b') {  // Enpassant capture left
-                    if (!piecePinned || Arrays.equals(pinDirection, new int[]{-1, -1})) {
-                        System.out.printf("Adding en passant move: from (%d,%d) to (%d,%d)%n", c, r, c - 1, r - 1);
-                        moves.add(Move.enpassantMove(new Square(c, r), new Square(c - 1, r - 1), board));
-                    }
-                }
-            }
-            // Capturing right
-            if (c + 1 <= 7) {
-                if (board[r - 1][c + 1].charAt(0) == 'b') { // Capturing right
-                    if (!piecePinned || Arrays.equals(pinDirection, new int[]{1, -1})) {
-                        moves.add(new Move(new Square(c, r), new Square(c + 1, r - 1), board));
-                    }
-                } else if (new Square(c + 1, r - 1).equals(this.enPassantPossible) && board[r][c + 1].charAt(0) == 'b') {  // Enpassant capture right
-                    if (!piecePinned || Arrays.equals(pinDirection, new int[]{1, -1})) {
-                        System.out.printf("Adding en passant move: from (%d,%d) to (%d,%d)%n", c, r, c + 1, r - 1);
-                        moves.add(Move.enpassantMove(new Square(c, r), new Square(c + 1, r - 1), board));
-                    }
-                }
-            }
-            // Black pawn logic
-        } else {
-            // Forward moves
-            if (board[r + 1][c].equals("--")) {
-                if (!piecePinned || Arrays.equals(pinDirection, new int[]{0, 1})) {
-                    moves.add(new Move(new Square(c, r), new Square(c, r + 1), board));
-                    if (r == 1 && board[r + 2][c].equals("--")) {
-                        moves.add(new Move(new Square(c, r), new Square(c, r + 2), board));
-                    }
-                }
-            }
-            // Capturing left
-            if (c - 1 >= 0) {
-                if (board[r + 1][c - 1].charAt(0) == 'w') { // Capturing left
-                    if (!piecePinned || Arrays.equals(pinDirection, new int[]{-1, 1})) {
-                        moves.add(new Move(new Square(c, r), new Square(c - 1, r + 1), board));
-                    }
-                } else if (new Square(c - 1, r + 1).equals(this.enPassantPossible) && board[r][c - 1].charAt(0) == 'w') {  // Enpassant capture left
-                    if (!piecePinned || Arrays.equals(pinDirection, new int[]{-1, 1})) {
-                        System.out.printf("Adding en passant move: from (%d,%d) to (%d,%d)%n", c, r, c - 1, r + 1);
-                        moves.add(Move.enpassantMove(new Square(c, r), new Square(c - 1, r + 1), board));
-                    }
-                }
-            }
-            // Capturing right
-            if (c + 1 <= 7) {
-                if (board[r + 1][c + 1].charAt(0) == 'w') { // Capturing right
-                    if (!piecePinned || Arrays.equals(pinDirection, new int[]{1, 1})) {
-                        moves.add(new Move(new Square(c, r), new Square(c + 1, r + 1), board));
-                    }
-                } else if (new Square(c + 1, r + 1).equals(this.enPassantPossible) && board[r][c + 1].charAt(0) == 'w') {  // Enpassant capture right
-                    if (!piecePinned || Arrays.equals(pinDirection, new int[]{1, 1})) {
-                        System.out.printf("Adding en passant move: from (%d,%d) to (%d,%d)%n", c, r, c + 1, r + 1);
-                        moves.add(Move.enpassantMove(new Square(c, r), new Square(c + 1, r + 1), board));
-                    }
+        // Captures
+        long attacks = PAWN_ATTACKS[color][sq];
+        targets |= attacks & enemyPieces;
+        targets &= legalTargets(sq) & pawnStageTargets;
+
+        int pawn = mailbox[sq];
+        int promotionRow = whiteToMove ? 0 : 7;
+        while (targets != 0) {
+            int end = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            if ((end >>> 3) == promotionRow) {
+                for (int type = QUEEN; type >= KNIGHT; type--) {  // Queen first, it's almost always the best
+                    moves.add(PackedMove.encode(sq, end, pawn, mailbox[end], color * 6 + type, 0));
                 }
+            } else {
+                int flags = Math.abs(end - sq) == 16 ? PackedMove.FLAG_DOUBLE_PUSH : 0;
+                moves.add(PackedMove.encode(sq, end, pawn, mailbox[end], NO_PIECE, flags));
             }
         }
+
+        if (enPassantInStage && this.enPassantSquare >= 0 && (attacks & (1L << enPassantSquare)) != 0 && isLegalEnPassant(sq, color)) {
+            int end = enPassantSquare;
+            int enemyPawn = (1 - color) * 6 + PAWN;
+            moves.add(PackedMove.encode(sq, end, pawn, enemyPawn, NO_PIECE, PackedMove.FLAG_EN_PASSANT));
+        }
     }
 
-    /*
-     * Get all Rook moves for the Rook located at row, col and add these moves to the list
+    /**
+     * En passant takes two pieces off one rank, so it can expose the king in ways the pin masks
+     * don't cover. Checked directly: the move has to deal with any check, and no slider may see
+     * the king once both pawns are gone.
      */
-    public void getRookMoves(int r, int c, List<Move> moves) {
-
-        boolean piecePinned = false;
-        int[] pinDirection = null;
-
-        // Check if piece is pinned
-        for (int i = pins.size() - 1; i >= 0; i--) {
-            PinOrCheck pin = pins.get(i);
-            if (pin.pos().col() == c && pin.pos().row() == r) {  // pins = (pos, dirCol, dirRow)
-                piecePinned = true;
-                pinDirection = new int[]{pin.dirCol(), pin.dirRow()};
-                if (board[r][c].charAt(1) != 'Q') {
-                    pins.remove(i);
-                }
-                break;
-            }
+    private boolean isLegalEnPassant(int start, int color) {
+        long landing = 1L << enPassantSquare;
+        long captured = 1L << square(start >>> 3, enPassantSquare & 7);
+        if (((landing | captured) & checkMask) == 0) {
+            return false;
         }
 
-        char enemyColor = whiteToMove ? 'b' : 'w';
-        int[][] directions = {{0, -1}, {0, 1}, {-1, 0}, {1, 0}}; // left, right, up, down
-
-        for (int[] d : directions) {
-            for (int i = 1; i < 8; i++) {
-                int endRow = r + d[0] * i;
-                int endCol = c + d[1] * i;
-
-                if (endRow >= 0 && endRow < 8 && endCol >= 0 && endCol < 8) { // confine to board
-                    if (!piecePinned || Arrays.equals(pinDirection, d) || Arrays.equals(pinDirection, new int[]{-d[0], -d[1]})) {
-                        String endPiece = board[endRow][endCol];
+        long occupiedAfter = occupied ^ (1L << start) ^ landing ^ captured;
+        int kingSq = kingSquare(color);
+        int enemy = (1 - color) * 6;
+        return (Magics.rookAttacks(kingSq, occupiedAfter) & (pieceBitboards[enemy + ROOK] | pieceBitboards[enemy + QUEEN])) == 0
+               && (Magics.bishopAttacks(kingSq, occupiedAfter) & (pieceBitboards[enemy + BISHOP] | pieceBitboards[enemy + QUEEN])) == 0;
+    }
 
-                        if (endPiece.equals("--")) { // if blank, append move
-                            moves.add(new Move(new Square(c, r), new Square(endCol, endRow), board));
-                        } else if (endPiece.charAt(0) == enemyColor) { // hits enemy piece
-                            moves.add(new Move(new Square(c, r), new Square(endCol, endRow), board));
-                            break;
-                        } else { // hits own color piece
-                            break;
-                        }
-                    }
-                } else { // off board
-                    break;
-                }
-            }
-        }
+    /*
+     * Get all Rook moves for the Rook located at row, col and add these moves to the list
+     */
+    public void getRookMoves(int r, int c, MoveList moves) {
+        long targets = Magics.rookAttacks(square(r, c), occupied) & ~colorBitboards[whiteToMove ? WHITE : BLACK];
+        addMoves(r, c, targets & legalTargets(square(r, c)) & stageTargets, moves);
     }
 
     /**
      * Get all Bishop moves for the Bishop located at row, col and add these moves to the list
      */
-    public void getBishopMoves(int r, int c, List<Move> moves) {
-
-        boolean piecePinned = false;
-        int[] pinDirection = null;
-
-        // Check if piece is pinned
-        for (int i = pins.size() - 1; i >= 0; i--) {
-            PinOrCheck pin = pins.get(i);
-            if (pin.pos().col() == c && pin.pos().row() == r) {  // pins = (pos, dirCol, dirRow)
-                piecePinned = true;
-                pinDirection = new int[]{pin.dirCol(), pin.dirRow()};
-                if (board[r][c].charAt(1) != 'Q') {
-                    pins.remove(i);
-                }
-                break;
-            }
-        }
-
-        char enemyColor = whiteToMove ? 'b' : 'w';
-        int[][] directions = {{-1, -1}, {-1, 1}, {1, -1}, {1, 1}}; // leftup, rightup, leftdown, rightdown
-
-        for (int[] d : directions) {
-            for (int i = 1; i < 8; i++) {
-                int endRow = r + d[0] * i;
-                int endCol = c + d[1] * i;
-
-                if (endRow >= 0 && endRow < 8 && endCol >= 0 && endCol < 8) { // confine to board
-                    if (!piecePinned || Arrays.equals(pinDirection, d) || Arrays.equals(pinDirection, new int[]{-d[0], -d[1]})) {
-                        String endPiece = board[endRow][endCol];
-
-                        if (endPiece.equals("--")) { // if blank, append move
-                            moves.add(new Move(new Square(c, r), new Square(endCol, endRow), board));
-                        } else if (endPiece.charAt(0) == enemyColor) { // hits enemy piece
-                            moves.add(new Move(new Square(c, r), new Square(endCol, endRow), board));
-                            break;
-                        } else { // hits own color piece
-                            break;
-                        }
-                    }
-                } else { // off board
-                    break;
-                }
-            }
-        }
+    public void getBishopMoves(int r, int c, MoveList moves) {
+        long targets = Magics.bishopAttacks(square(r, c), occupied) & ~colorBitboards[whiteToMove ? WHITE : BLACK];
+        addMoves(r, c, targets & legalTargets(square(r, c)) & stageTargets, moves);
     }
 
     /**
      * Get all Queen moves for the Queen located at row, col and add these moves to the list
      */
-    public void getQueenMoves(int r, int c, List<Move> moves) {
+    public void getQueenMoves(int r, int c, MoveList moves) {
         getBishopMoves(r, c, moves);
         getRookMoves(r, c, moves);
     }
@@ -672,81 +1057,115 @@ public class GameState {
     /**
      * Get all Knight moves for the Knight located at row, col and add these moves to the list
      */
-    public void getKnightMoves(int r, int c, List<Move> moves) {
-        boolean piecePinned = false;
+    public void getKnightMoves(int r, int c, MoveList moves) {
+        long targets = KNIGHT_ATTACKS[square(r, c)] & ~colorBitboards[whiteToMove ? WHITE : BLACK];
+        addMoves(r, c, targets & legalTargets(square(r, c)) & stageTargets, moves);  // A pinned knight never lands on its pin ray
+    }
 
-        // Check if piece is pinned
-        for (int i = pins.size() - 1; i >= 0; i--) {
-            PinOrCheck pin = pins.get(i);
-            if (pin.pos().col() == c && pin.pos().row() == r) {  // pins = (pos, dirCol, dirRow)
-                piecePinned = true;
-                if (board[r][c].charAt(1) != 'Q') {
-                    pins.remove(i);
-                }
-                break;
-            }
+    /**
+     * Get all King moves for the King located at row, col and add these moves to the list
+     */
+    public void getKingMoves(int r, int c, MoveList moves) {
+        long targets = KING_ATTACKS[square(r, c)] & ~colorBitboards[whiteToMove ? WHITE : BLACK];
+        addMoves(r, c, targets & ~kingDangerSquares & stageTargets, moves);
+    }
+
+    /**
+     * Squares a non-king piece on sq may move to: the check mask, narrowed to its pin ray if pinned.
+     */
+    private long legalTargets(int sq) {
+        return (pinnedPieces & (1L << sq)) == 0 ? checkMask : checkMask & pinRays[sq];
+    }
+
+    /**
+     * Adds a move from row, col to every square in the targets bitboard.
+     */
+    private void addMoves(int r, int c, long targets, MoveList moves) {
+        int start = square(r, c);
+        int pieceMoved = mailbox[start];
+        while (targets != 0) {
+            int end = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves.add(PackedMove.encode(start, end, pieceMoved, mailbox[end], NO_PIECE, 0));
         }
+    }
 
-        int[][] potentialMoves = {{-1, -2}, {-2, -1}, {-2, 1}, {-1, 2},
-                                   {1, 2}, {2, 1}, {2, -1}, {1, -2}};
-        char allyColor = whiteToMove ? 'w' : 'b';
+    public String[][] getBoard() {
+        return board;
+    }
 
-        for (int[] m : potentialMoves) {
-            int endRow = r + m[0];
-            int endCol = c + m[1];
+    /**
+     * Bitboard of one piece, indexed as in Bitboards.PIECE_CODES.
+     */
+    public long getPieceBitboard(int piece) {
+        return pieceBitboards[piece];
+    }
 
-            if (endRow >= 0 && endRow < 8 && endCol >= 0 && endCol < 8) { // confine to board
-                if (!piecePinned) {
-                    String endPiece = board[endRow][endCol];
+    /**
+     * Castle rights still available, as CastleRights bits.
+     */
+    public int getCastleRights() {
+        return currentCastleRights.toBits();
+    }
 
-                    if (endPiece.charAt(0) != allyColor) {
-                        moves.add(new Move(new Square(c, r), new Square(endCol, endRow), board));
-                    }
-                }
-            }
-        }
+    /**
+     * Square a pawn can capture onto en passant, -1 if none.
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
     }
 
     /**
-     * Get all King moves for the King located at row, col and add these moves to the list
+     * Packed move played at a ply, 0 being the first move of the game. moveLog boxes the same moves as Move records.
      */
-    public void getKingMoves(int r, int c, List<Move> moves) {
-        int[][] potentialMoves = {{-1, -1}, {-1, 0}, {-1, 1}, {0, 1},
-                                   {1, 1}, {1, 0}, {1, -1}, {0, -1}};
-        char allyColor = whiteToMove ? 'w' : 'b';
+    public int getMove(int ply) {
+        return moveHistory.get(ply);
+    }
 
-        for (int[] m : potentialMoves) {
-            int endRow = r + m[0];
-            int endCol = c + m[1];
+    /**
+     * Zobrist hash of the pawns alone, which changes only when a pawn moves, is captured or promotes.
+     */
+    public long getPawnKey() {
+        return pawnKey;
+    }
 
-            if (endRow >= 0 && endRow < 8 && endCol >= 0 && endCol < 8) { // confine to board
-                String endPiece = board[endRow][endCol];
+    /**
+     * Material and piece-square score for the middlegame, from white's point of view (see PieceSquareTables).
+     */
+    public int getMiddlegameScore() {
+        return middlegameScore;
+    }
 
-                if (endPiece.charAt(0) != allyColor) {  // Empty or enemy piece
-                    if (allyColor == 'w') {  // Place king on square and check for checks
-                        whiteKingLocation = new Square(endCol, endRow);
-                    } else {
-                        blackKingLocation = new Square(endCol, endRow);
-                    }
+    /**
+     * The same for the endgame.
+     */
+    public int getEndgameScore() {
+        return endgameScore;
+    }
 
-                    PinsAndChecks result = checkForPinsAndChecks();
-                    boolean inCheck = result.inCheck();
+    /**
+     * Game phase from the pieces left, PieceSquareTables.MAX_PHASE at the start and 0 with only pawns and kings.
+     */
+    public int getPhase() {
+        return phase;
+    }
 
-                    if (!inCheck) {
-                        moves.add(new Move(new Square(c, r), new Square(endCol, endRow), board));
-                    }
+    /**
+     * 64-bit Zobrist hash of the position: pieces, side to move, castle rights and en passant square.
+     */
+    public long getZobristKey() {
+        return zobristKey;
+    }
 
-                    if (allyColor == 'w') {
-                        whiteKingLocation = new Square(c, r);  // Place king back on original location
-                    } else {
-                        blackKingLocation = new Square(c, r);
-                    }
-                }
+    /**
+     * True if the current position has occurred before in this game, with the same side to move.
+     */
+    public boolean isRepetition() {
+        for (int ply = moveHistory.size() - 2; ply >= 0; ply -= 2) {
+            if (zobristLog[ply] == zobristKey) {
+                return true;
             }
         }
-    }
-
-    public String[][] getBoard() {
-        return board;
+        return false;
     }
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package com.edwardhicks.chess;
+
+/**
+ * The legal moves and check/mate/stalemate state of one position, computed once by
+ * GameState.getStatus and kept until the next makeMove or undoMove. Immutable, so a UI can
+ * read it on every repaint without generating moves.
+ *
+ * Moves are grouped by origin square: the moves from square sq are
+ * moves[firstMove[sq]] to moves[firstMove[sq + 1] - 1], in generation order.
+ */
+public final class GameStatus {
+
+    private final int[] moves;
+    private final int[] firstMove = new int[65];
+    private final long[] targets = new long[64];  // end squares of the moves from each square
+    private final boolean whiteToMove;
+    private final boolean inCheck;
+
+    GameStatus(MoveList legalMoves, boolean whiteToMove, boolean inCheck) {
+        this.whiteToMove = whiteToMove;
+        this.inCheck = inCheck;
+
+        // Counting sort by start square, stable so a queen promotion stays ahead of the underpromotions
+        int[] count = new int[64];
+        for (int i = 0; i < legalMoves.size(); i++) {
+            count[PackedMove.start(legalMoves.get(i))]++;
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            firstMove[sq + 1] = firstMove[sq] + count[sq];
+        }
+        int[] next = firstMove.clone();
+        this.moves = new int[legalMoves.size()];
+        for (int i = 0; i < legalMoves.size(); i++) {
+            int move = legalMoves.get(i);
+            int start = PackedMove.start(move);
+            moves[next[start]++] = move;
+            targets[start] |= 1L << PackedMove.end(move);
+        }
+    }
+
+    public int moveCount() {
+        return moves.length;
+    }
+
+    /**
+     * Bitboard of the squares the piece on sq can legally move to, 0 if none.
+     */
+    public long targets(int sq) {
+        return targets[sq];
+    }
+
+    /**
+     * The legal move from start to end, promoting to a queen if it is a promotion, or
+     * PackedMove.NONE if there is none.
+     */
+    public int findMove(int start, int end) {
+        for (int i = firstMove[start]; i < firstMove[start + 1]; i++) {
+            if (PackedMove.end(moves[i]) == end) {
+                return moves[i];  // queen promotions are generated first
+            }
+        }
+        return PackedMove.NONE;
+    }
+
+    /**
+     * Adds the legal moves from sq to the list.
+     */
+    public void movesFrom(int sq, MoveList list) {
+        for (int i = firstMove[sq]; i < firstMove[sq + 1]; i++) {
+            list.add(moves[i]);
+        }
+    }
+
+    public boolean whiteToMove() {
+        return whiteToMove;
+    }
+
+    public boolean inCheck() {
+        return inCheck;
+    }
+
+    public boolean isCheckmate() {
+        return moves.length == 0 && inCheck;
+    }
+
+    public boolean isStalemate() {
+        return moves.length == 0 && !inCheck;
+    }
+
+    public boolean isGameOver() {
+        return moves.length == 0;
+    }
+}
@@ -4,7 +4,13 @@ import com.edwardhicks.chess.Square;
 
 import java.util.Objects;
 
-public record Move(Square start, Square end, String pieceMoved, String pieceCaptured, boolean isEnpassantMove, boolean isCastleMove) {
+public record Move(Square start, Square end, String pieceMoved, String pieceCaptured, boolean isEnpassantMove, boolean isCastleMove,
+                   String piecePromoted) {
+
+    // Promotes to a queen when a pawn reaches the last row, for moves entered without a choice of piece
+    public Move(Square start, Square end, String pieceMoved, String pieceCaptured, boolean isEnpassantMove, boolean isCastleMove) {
+        this(start, end, pieceMoved, pieceCaptured, isEnpassantMove, isCastleMove, defaultPromotion(pieceMoved, end));
+    }
 
     // Convenience constructor
     public Move(Square start, Square end, String[][] board) {
@@ -28,10 +34,22 @@ public record Move(Square start, Square end, String pieceMoved, String pieceCapt
                end.col() * 10 + end.row();
     }
 
+    // Long algebraic notation, e.g. "e2e4", or "e7e8q" for a promotion
+    public String toLongAlgebraic() {
+        String move = start.toAlgebraic() + end.toAlgebraic();
+        return isPawnPromotion() ? move + Character.toLowerCase(piecePromoted.charAt(1)) : move;
+    }
+
     public boolean isPawnPromotion() {
         return this.pieceMoved.equals("wp") && this.end.row() == 0 || this.pieceMoved.equals("bp") && this.end.row() == 7;
     }
 
+    private static String defaultPromotion(String pieceMoved, Square end) {
+        if (pieceMoved.equals("wp") && end.row() == 0) return "wQ";
+        if (pieceMoved.equals("bp") && end.row() == 7) return "bQ";
+        return "--";
+    }
+
 
     /**
      * Overriding equals is crucial so that validMoves.contains(userMove)
@@ -42,8 +60,8 @@ public record Move(Square start, Square end, String pieceMoved, String pieceCapt
         if (this == other) return true;
         if (other == null || getClass() != other.getClass()) return false;
         Move move = (Move) other;
-        // Two moves are considered equal if they share the same start and end coordinates
-        return this.getMoveID() == move.getMoveID();
+        // Two moves are considered equal if they share the same start and end coordinates and promote to the same piece
+        return this.getMoveID() == move.getMoveID() && this.piecePromoted.equals(move.piecePromoted);
     }
 
     /**
@@ -52,7 +70,7 @@ public record Move(Square start, Square end, String pieceMoved, String pieceCapt
      */
     @Override
     public int hashCode() {
-        return Objects.hash(getMoveID());
+        return Objects.hash(getMoveID(), piecePromoted);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.edwardhicks.chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A growable list of packed moves (see PackedMove) backed by an int array.
+ * Meant to be cleared and reused rather than reallocated.
+ */
+public class MoveList {
+    private int[] moves;
+    private int size;
+
+    public MoveList() {
+        this(256);  // More than the legal moves in any position
+    }
+
+    public MoveList(int capacity) {
+        this.moves = new int[capacity];
+    }
+
+    public MoveList(MoveList other) {
+        this.moves = other.moves.clone();
+        this.size = other.size;
+    }
+
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int removeLast() {
+        return moves[--size];
+    }
+
+    public void swap(int i, int j) {
+        int tmp = moves[i];
+        moves[i] = moves[j];
+        moves[j] = tmp;
+    }
+
+    public boolean contains(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Boxes every move into a Move record, for the UI and other callers of the List API.
+     */
+    public ArrayList<Move> toMoves() {
+        ArrayList<Move> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(PackedMove.toMove(moves[i]));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,112 @@
+package com.edwardhicks.chess;
+
+import static com.edwardhicks.chess.bitboard.Bitboards.*;
+
+/**
+ * Moves packed into a single int so move generation and search don't allocate.
+ *
+ *  bits  0-5   start square (row * 8 + col)
+ *  bits  6-11  end square
+ *  bits 12-15  piece moved, indexed as in Bitboards.PIECE_CODES
+ *  bits 16-19  piece captured, NO_PIECE if none
+ *  bits 20-23  piece promoted to, NO_PIECE if none
+ *  bits 24-26  flags: en passant, castle, double pawn push
+ *
+ * A move never starts and ends on the same square, so 0 is free to mean "no move".
+ */
+public final class PackedMove {
+
+    public static final int NONE = 0;
+    public static final int NO_PIECE = 0xF;
+
+    public static final int FLAG_EN_PASSANT = 1 << 24;
+    public static final int FLAG_CASTLE = 1 << 25;
+    public static final int FLAG_DOUBLE_PUSH = 1 << 26;
+
+    private PackedMove() {}
+
+    public static int encode(int start, int end, int pieceMoved, int pieceCaptured, int promotion, int flags) {
+        return start | end << 6 | pieceMoved << 12 | pieceCaptured << 16 | promotion << 20 | flags;
+    }
+
+    public static int start(int move) {
+        return move & 0x3F;
+    }
+
+    public static int end(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static int pieceMoved(int move) {
+        return (move >>> 12) & 0xF;
+    }
+
+    public static int pieceCaptured(int move) {
+        return (move >>> 16) & 0xF;
+    }
+
+    public static int promotion(int move) {
+        return (move >>> 20) & 0xF;
+    }
+
+    public static boolean isCapture(int move) {
+        return pieceCaptured(move) != NO_PIECE;
+    }
+
+    public static boolean isPromotion(int move) {
+        return promotion(move) != NO_PIECE;
+    }
+
+    public static boolean isEnpassantMove(int move) {
+        return (move & FLAG_EN_PASSANT) != 0;
+    }
+
+    public static boolean isCastleMove(int move) {
+        return (move & FLAG_CASTLE) != 0;
+    }
+
+    public static boolean isDoublePush(int move) {
+        return (move & FLAG_DOUBLE_PUSH) != 0;
+    }
+
+    public static Move toMove(int move) {
+        int start = start(move);
+        int end = end(move);
+        int captured = pieceCaptured(move);
+        int promotion = promotion(move);
+        return new Move(new Square(start & 7, start >>> 3), new Square(end & 7, end >>> 3),
+                        PIECE_CODES[pieceMoved(move)], captured == NO_PIECE ? "--" : PIECE_CODES[captured],
+                        isEnpassantMove(move), isCastleMove(move), promotion == NO_PIECE ? "--" : PIECE_CODES[promotion]);
+    }
+
+    public static int fromMove(Move move) {
+        int start = square(move.start().row(), move.start().col());
+        int end = square(move.end().row(), move.end().col());
+        int pieceMoved = pieceIndex(move.pieceMoved());
+        int pieceCaptured = pieceIndex(move.pieceCaptured());
+
+        int promotion = move.isPawnPromotion() ? pieceIndex(move.piecePromoted()) : NO_PIECE;
+
+        int flags = 0;
+        if (move.isEnpassantMove()) {
+            flags |= FLAG_EN_PASSANT;
+        }
+        if (move.isCastleMove()) {
+            flags |= FLAG_CASTLE;
+        }
+        if (pieceMoved % 6 == PAWN && Math.abs(move.start().row() - move.end().row()) == 2) {
+            flags |= FLAG_DOUBLE_PUSH;
+        }
+        return encode(start, end, pieceMoved, pieceCaptured < 0 ? NO_PIECE : pieceCaptured, promotion, flags);
+    }
+
+    // Long algebraic notation, e.g. "e2e4", or "e7e8q" for a promotion
+    public static String toLongAlgebraic(int move) {
+        String name = squareName(start(move)) + squareName(end(move));
+        return isPromotion(move) ? name + Character.toLowerCase(PIECE_CODES[promotion(move)].charAt(1)) : name;
+    }
+
+    private static String squareName(int sq) {
+        return "" + (char) ('a' + (sq & 7)) + (8 - (sq >>> 3));
+    }
+}
@@ -0,0 +1,146 @@
+package com.edwardhicks.chess;
+
+import static com.edwardhicks.chess.bitboard.Bitboards.*;
+
+/**
+ * Material plus piece-square bonuses, one table for the middlegame and one for the endgame, so
+ * the evaluation can blend them by how much material is left. GameState keeps the sums up to
+ * date in setSquare, the same way it keeps the Zobrist key, so reading them is O(1).
+ *
+ * Values are in centipawns and signed, white's pieces positive and black's negative. The tables
+ * below are from white's point of view with a8 first, which is also our square order, so black
+ * looks them up with the square mirrored top to bottom (sq ^ 56).
+ */
+public final class PieceSquareTables {
+
+    // Indexed by piece type: pawn, knight, bishop, rook, queen, king
+    public static final int[] PIECE_VALUES = {100, 320, 330, 500, 900, 0};
+
+    // Weight of each piece type in the game phase, 24 with all pieces on the board
+    private static final int[] PHASE_WEIGHTS = {0, 1, 1, 2, 4, 0};
+    public static final int MAX_PHASE = 24;
+
+    private static final int[] PAWN_MIDDLEGAME = {
+         0,   0,   0,   0,   0,   0,   0,   0,
+        50,  50,  50,  50,  50,  50,  50,  50,
+        10,  10,  20,  30,  30,  20,  10,  10,
+         5,   5,  10,  25,  25,  10,   5,   5,
+         0,   0,   0,  20,  20,   0,   0,   0,
+         5,  -5, -10,   0,   0, -10,  -5,   5,
+         5,  10,  10, -20, -20,  10,  10,   5,
+         0,   0,   0,   0,   0,   0,   0,   0
+    };
+
+    // In the endgame a pawn is worth more the closer it is to promoting, whatever its file
+    private static final int[] PAWN_ENDGAME = {
+         0,   0,   0,   0,   0,   0,   0,   0,
+        80,  80,  80,  80,  80,  80,  80,  80,
+        50,  50,  50,  50,  50,  50,  50,  50,
+        30,  30,  30,  30,  30,  30,  30,  30,
+        20,  20,  20,  20,  20,  20,  20,  20,
+        10,  10,  10,  10,  10,  10,  10,  10,
+        10,  10,  10,  10,  10,  10,  10,  10,
+         0,   0,   0,   0,   0,   0,   0,   0
+    };
+
+    private static final int[] KNIGHT = {
+        -50, -40, -30, -30, -30, -30, -40, -50,
+        -40, -20,   0,   0,   0,   0, -20, -40,
+        -30,   0,  10,  15,  15,  10,   0, -30,
+        -30,   5,  15,  20,  20,  15,   5, -30,
+        -30,   0,  15,  20,  20,  15,   0, -30,
+        -30,   5,  10,  15,  15,  10,   5, -30,
+        -40, -20,   0,   5,   5,   0, -20, -40,
+        -50, -40, -30, -30, -30, -30, -40, -50
+    };
+
+    private static final int[] BISHOP = {
+        -20, -10, -10, -10, -10, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,  10,  10,   5,   0, -10,
+        -10,   5,   5,  10,  10,   5,   5, -10,
+        -10,   0,  10,  10,  10,  10,   0, -10,
+        -10,  10,  10,  10,  10,  10,  10, -10,
+        -10,   5,   0,   0,   0,   0,   5, -10,
+        -20, -10, -10, -10, -10, -10, -10, -20
+    };
+
+    private static final int[] ROOK = {
+         0,   0,   0,   0,   0,   0,   0,   0,
+         5,  10,  10,  10,  10,  10,  10,   5,
+        -5,   0,   0,   0,   0,   0,   0,  -5,
+        -5,   0,   0,   0,   0,   0,   0,  -5,
+        -5,   0,   0,   0,   0,   0,   0,  -5,
+        -5,   0,   0,   0,   0,   0,   0,  -5,
+        -5,   0,   0,   0,   0,   0,   0,  -5,
+         0,   0,   0,   5,   5,   0,   0,   0
+    };
+
+    private static final int[] QUEEN = {
+        -20, -10, -10,  -5,  -5, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,   5,   5,   5,   0, -10,
+         -5,   0,   5,   5,   5,   5,   0,  -5,
+          0,   0,   5,   5,   5,   5,   0,  -5,
+        -10,   5,   5,   5,   5,   5,   0, -10,
+        -10,   0,   5,   0,   0,   0,   0, -10,
+        -20, -10, -10,  -5,  -5, -10, -10, -20
+    };
+
+    // Tucked away behind its pawns while there are pieces to attack it
+    private static final int[] KING_MIDDLEGAME = {
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -20, -30, -30, -40, -40, -30, -30, -20,
+        -10, -20, -20, -20, -20, -20, -20, -10,
+         20,  20,   0,   0,   0,   0,  20,  20,
+         20,  30,  10,   0,   0,  10,  30,  20
+    };
+
+    // Central once the attackers are gone, which also helps drive a lone king to the edge
+    private static final int[] KING_ENDGAME = {
+        -50, -40, -30, -20, -20, -30, -40, -50,
+        -30, -20, -10,   0,   0, -10, -20, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -30,   0,   0,   0,   0, -30, -30,
+        -50, -30, -30, -30, -30, -30, -30, -50
+    };
+
+    private static final int[][] MIDDLEGAME_BONUS = {PAWN_MIDDLEGAME, KNIGHT, BISHOP, ROOK, QUEEN, KING_MIDDLEGAME};
+    private static final int[][] ENDGAME_BONUS = {PAWN_ENDGAME, KNIGHT, BISHOP, ROOK, QUEEN, KING_ENDGAME};
+
+    private static final int[] MIDDLEGAME = new int[12 * 64];  // [piece * 64 + square], material included
+    private static final int[] ENDGAME = new int[12 * 64];
+
+    static {
+        for (int piece = 0; piece < 12; piece++) {
+            int type = piece % 6;
+            boolean white = piece / 6 == WHITE;
+            for (int sq = 0; sq < 64; sq++) {
+                int tableSq = white ? sq : sq ^ 56;
+                int sign = white ? 1 : -1;
+                MIDDLEGAME[piece * 64 + sq] = sign * (PIECE_VALUES[type] + MIDDLEGAME_BONUS[type][tableSq]);
+                ENDGAME[piece * 64 + sq] = sign * (PIECE_VALUES[type] + ENDGAME_BONUS[type][tableSq]);
+            }
+        }
+    }
+
+    private PieceSquareTables() {}
+
+    public static int middlegame(int piece, int sq) {
+        return MIDDLEGAME[piece * 64 + sq];
+    }
+
+    public static int endgame(int piece, int sq) {
+        return ENDGAME[piece * 64 + sq];
+    }
+
+    public static int phase(int piece) {
+        return PHASE_WEIGHTS[piece % 6];
+    }
+}
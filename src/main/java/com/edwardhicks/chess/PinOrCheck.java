@@ -1,4 +0,0 @@
-package com.edwardhicks.chess;
-
-
-public record PinOrCheck(Square pos, int dirCol, int dirRow) {}
\ No newline at end of file
@@ -1,5 +0,0 @@
-package com.edwardhicks.chess;
-
-import java.util.List;
-
-public record PinsAndChecks(boolean inCheck, List<PinOrCheck> pins, List<PinOrCheck> checks) {}
\ No newline at end of file
@@ -0,0 +1,195 @@
+package com.edwardhicks.chess;
+
+import static com.edwardhicks.chess.PackedMove.NO_PIECE;
+import static com.edwardhicks.chess.bitboard.Bitboards.*;
+
+/**
+ * Immutable snapshot of a game, from GameState.snapshot. Safe to hold and read from any thread
+ * while the game goes on.
+ *
+ * The board is a 64 byte mailbox. The moves played are a linked list from the newest move back,
+ * and consecutive snapshots of a game share the part of the list they have in common, so a
+ * snapshot costs the board copy plus one node per move since the last one.
+ */
+public final class Position {
+
+    /**
+     * One move of the history and everything before it. Never changed once linked.
+     */
+    static final class History {
+        final int move;
+        final History previous;
+        final int length;
+
+        History(int move, History previous) {
+            this.move = move;
+            this.previous = previous;
+            this.length = previous == null ? 1 : previous.length + 1;
+        }
+
+        static int length(History history) {
+            return history == null ? 0 : history.length;
+        }
+    }
+
+    private final byte[] board = new byte[64];  // piece index on each square, NO_PIECE if empty
+    private final boolean whiteToMove;
+    private final int castleRights;
+    private final int enPassantSquare;
+    private final int halfmoveClock;
+    private final int fullmoveNumber;
+    private final long zobristKey;
+    private final History history;
+
+    Position(int[] mailbox, boolean whiteToMove, int castleRights, int enPassantSquare, int halfmoveClock,
+             int fullmoveNumber, long zobristKey, History history) {
+        for (int sq = 0; sq < 64; sq++) {
+            board[sq] = (byte) mailbox[sq];
+        }
+        this.whiteToMove = whiteToMove;
+        this.castleRights = castleRights;
+        this.enPassantSquare = enPassantSquare;
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+        this.zobristKey = zobristKey;
+        this.history = history;
+    }
+
+    /**
+     * Piece index on the square (see Bitboards.PIECE_CODES), NO_PIECE if it is empty.
+     */
+    public int pieceAt(int sq) {
+        return board[sq];
+    }
+
+    /**
+     * Piece code as in GameState.getBoard, e.g. "wK", or "--" for an empty square.
+     */
+    public String pieceCode(int row, int col) {
+        int piece = board[row * 8 + col];
+        return piece == NO_PIECE ? "--" : PIECE_CODES[piece];
+    }
+
+    /**
+     * A new board array in GameState.getBoard's layout, for code written against it.
+     */
+    public String[][] toBoard() {
+        String[][] rows = new String[8][8];
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                rows[r][c] = pieceCode(r, c);
+            }
+        }
+        return rows;
+    }
+
+    public boolean whiteToMove() {
+        return whiteToMove;
+    }
+
+    /**
+     * Castling rights as CastleRights bits.
+     */
+    public int castleRights() {
+        return castleRights;
+    }
+
+    /**
+     * Square a pawn can capture onto en passant, -1 if none.
+     */
+    public int enPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public int halfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int fullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public long zobristKey() {
+        return zobristKey;
+    }
+
+    /**
+     * Number of moves played in the game up to this position.
+     */
+    public int plies() {
+        return History.length(history);
+    }
+
+    /**
+     * The packed moves played, oldest first.
+     */
+    public int[] moves() {
+        int[] moves = new int[plies()];
+        for (History node = history; node != null; node = node.previous) {
+            moves[node.length - 1] = node.move;
+        }
+        return moves;
+    }
+
+    /**
+     * The move that led to this position, PackedMove.NONE at the start of the game.
+     */
+    public int lastMove() {
+        return history == null ? PackedMove.NONE : history.move;
+    }
+
+    /**
+     * The position in Forsyth-Edwards Notation.
+     */
+    public String toFen() {
+        StringBuilder fen = new StringBuilder();
+        for (int r = 0; r < 8; r++) {
+            int empty = 0;
+            for (int c = 0; c < 8; c++) {
+                int piece = board[r * 8 + c];
+                if (piece == NO_PIECE) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                char letter = PIECE_CODES[piece].charAt(1);
+                fen.append(piece / 6 == WHITE ? Character.toUpperCase(letter) : Character.toLowerCase(letter));
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (r < 7) {
+                fen.append('/');
+            }
+        }
+
+        fen.append(whiteToMove ? " w " : " b ");
+
+        if (castleRights == 0) {
+            fen.append('-');
+        } else {
+            if ((castleRights & CastleRights.WKS) != 0) fen.append('K');
+            if ((castleRights & CastleRights.WQS) != 0) fen.append('Q');
+            if ((castleRights & CastleRights.BKS) != 0) fen.append('k');
+            if ((castleRights & CastleRights.BQS) != 0) fen.append('q');
+        }
+
+        fen.append(' ');
+        if (enPassantSquare < 0) {
+            fen.append('-');
+        } else {
+            fen.append((char) ('a' + (enPassantSquare & 7))).append(8 - (enPassantSquare >>> 3));
+        }
+
+        fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return fen.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toFen();
+    }
+}
@@ -8,4 +8,9 @@ public record Square(int col, int row) {
     public String toString() {
         return "Col: " + this.col() + " Row: " + this.row();
     }
+
+    // Algebraic name of the square, e.g. "e4". Row 0 is the 8th rank
+    public String toAlgebraic() {
+        return "" + (char) ('a' + this.col()) + (8 - this.row());
+    }
 }
@@ -0,0 +1,48 @@
+package com.edwardhicks.chess;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing. A position's key is the XOR of the keys of everything in it,
+ * so a move updates the key by XORing out what changed and XORing in the new state.
+ */
+public final class Zobrist {
+
+    private static final long[][] PIECE_SQUARE = new long[12][64];  // [piece index][square]
+    private static final long[] CASTLE_RIGHTS = new long[16];  // one per combination of CastleRights bits
+    private static final long[] EN_PASSANT_FILE = new long[8];
+    public static final long BLACK_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EED_C0FFEEL);  // Fixed seed so keys are stable between runs
+        for (long[] squares : PIECE_SQUARE) {
+            for (int sq = 0; sq < 64; sq++) {
+                squares[sq] = random.nextLong();
+            }
+        }
+        for (int i = 0; i < CASTLE_RIGHTS.length; i++) {
+            CASTLE_RIGHTS[i] = random.nextLong();
+        }
+        for (int i = 0; i < EN_PASSANT_FILE.length; i++) {
+            EN_PASSANT_FILE[i] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {}
+
+    public static long piece(int piece, int sq) {
+        return PIECE_SQUARE[piece][sq];
+    }
+
+    public static long castleRights(int castleRightsBits) {
+        return CASTLE_RIGHTS[castleRightsBits];
+    }
+
+    /**
+     * Key for an en passant square, 0 when there is none (-1) so it can be XORed unconditionally.
+     */
+    public static long enPassant(int sq) {
+        return sq < 0 ? 0L : EN_PASSANT_FILE[sq & 7];
+    }
+}
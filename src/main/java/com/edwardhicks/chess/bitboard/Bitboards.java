@@ -0,0 +1,109 @@
+package com.edwardhicks.chess.bitboard;
+
+/**
+ * Bitboard constants and precomputed leaper attack tables.
+ * A bitboard is a long with one bit per square, bit index = row * 8 + col,
+ * so bit 0 is the top-left square of the board (a8) and bit 63 the bottom-right (h1).
+ */
+public final class Bitboards {
+
+    // Colors
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    // Piece types, piece index = color * 6 + type
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    // Piece codes used by the string board, ordered by piece index
+    public static final String[] PIECE_CODES = {"wp", "wN", "wB", "wR", "wQ", "wK",
+                                                "bp", "bN", "bB", "bR", "bQ", "bK"};
+
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+    public static final long[][] PAWN_ATTACKS = new long[2][64];  // [color][square]
+    public static final long[][] BETWEEN = new long[64][64];  // squares strictly between two aligned squares, else 0
+
+    static {
+        int[][] knightOffsets = {{-1, -2}, {-2, -1}, {-2, 1}, {-1, 2},
+                                 {1, 2}, {2, 1}, {2, -1}, {1, -2}};
+        int[][] kingOffsets = {{-1, -1}, {-1, 0}, {-1, 1}, {0, 1},
+                               {1, 1}, {1, 0}, {1, -1}, {0, -1}};
+
+        for (int sq = 0; sq < 64; sq++) {
+            int r = sq >>> 3;
+            int c = sq & 7;
+            KNIGHT_ATTACKS[sq] = offsetsToBitboard(r, c, knightOffsets);
+            KING_ATTACKS[sq] = offsetsToBitboard(r, c, kingOffsets);
+            PAWN_ATTACKS[WHITE][sq] = offsetsToBitboard(r, c, new int[][] {{-1, -1}, {1, -1}});  // white pawns move up the board
+            PAWN_ATTACKS[BLACK][sq] = offsetsToBitboard(r, c, new int[][] {{-1, 1}, {1, 1}});
+        }
+
+        for (int[] d : kingOffsets) {  // every rook and bishop direction
+            for (int from = 0; from < 64; from++) {
+                long between = 0L;
+                int c = (from & 7) + d[0];
+                int r = (from >>> 3) + d[1];
+                while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                    int to = square(r, c);
+                    BETWEEN[from][to] = between;
+                    between |= 1L << to;
+                    c += d[0];
+                    r += d[1];
+                }
+            }
+        }
+    }
+
+    private Bitboards() {}
+
+    /**
+     * Square index for a (row, col) coordinate.
+     */
+    public static int square(int row, int col) {
+        return row * 8 + col;
+    }
+
+    /**
+     * Index into a piece bitboard array for a string piece code, or -1 for an empty square.
+     */
+    public static int pieceIndex(String piece) {
+        int color = switch (piece.charAt(0)) {
+            case 'w' -> WHITE;
+            case 'b' -> BLACK;
+            default -> -1;
+        };
+        if (color < 0) {
+            return -1;
+        }
+        return color * 6 + pieceType(piece.charAt(1));
+    }
+
+    public static int pieceType(char pieceChar) {
+        return switch (pieceChar) {
+            case 'p' -> PAWN;
+            case 'N' -> KNIGHT;
+            case 'B' -> BISHOP;
+            case 'R' -> ROOK;
+            case 'Q' -> QUEEN;
+            case 'K' -> KING;
+            default -> throw new IllegalArgumentException("Unknown piece: " + pieceChar);
+        };
+    }
+
+    private static long offsetsToBitboard(int row, int col, int[][] offsets) {
+        long bitboard = 0L;
+        for (int[] o : offsets) {  // (col, row)
+            int c = col + o[0];
+            int r = row + o[1];
+            if (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                bitboard |= 1L << square(r, c);
+            }
+        }
+        return bitboard;
+    }
+}
@@ -0,0 +1,134 @@
+package com.edwardhicks.chess.bitboard;
+
+/**
+ * Magic bitboard tables for rook and bishop attacks.
+ * For each square the relevant blockers are multiplied by a magic number, and the top bits of
+ * the product index a precomputed table of attack sets. The magic numbers below were found
+ * offline by a seeded random search over sparse candidates, for this class's square layout.
+ */
+public final class Magics {
+
+    private static final int[][] ROOK_DIRECTIONS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};  // (col, row)
+    private static final int[][] BISHOP_DIRECTIONS = {{-1, -1}, {1, -1}, {-1, 1}, {1, 1}};
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] ROOK_MAGICS = {
+            0x0480046281400010L, 0x80C0200010004000L, 0x8780200008300180L, 0x8880060800100080L,
+            0x2100030010080084L, 0x0100040001000802L, 0x0200040800810200L, 0x0580008002407100L,
+            0x1000800080400020L, 0x0080401000402001L, 0x800C802002100880L, 0x800A002200884010L,
+            0x2046002008108600L, 0x0222009002000804L, 0x100B000421001200L, 0x0240800100004080L,
+            0x4540008020408006L, 0x8010054020084002L, 0x7D10010100200040L, 0x1408008010000882L,
+            0x4408010005000810L, 0x001E008004000280L, 0x0230040001080210L, 0x0000020004004081L,
+            0x0100400080208001L, 0x1000842300400100L, 0x1060100080200082L, 0x3219004B00100020L,
+            0x9010080080800400L, 0x8440020080800400L, 0x6008010080800200L, 0x4123008200010044L,
+            0x0280002001400240L, 0x0220100040400020L, 0x0060801003802008L, 0x0008100080800800L,
+            0x0105000801001004L, 0x100B000803000400L, 0x0000024814001021L, 0x00408000C2802100L,
+            0x4C40004020808002L, 0x4410500420024000L, 0x00C0100020008080L, 0x0000100008008080L,
+            0x8002000804220011L, 0x0802000804010100L, 0x0243100201040008L, 0x0000009100420014L,
+            0x1000400280022480L, 0x0020200040100040L, 0x00A000100800C140L, 0x0410001408008080L,
+            0x0000080004008080L, 0x0100020004008080L, 0x0303000200040300L, 0x1480006104008200L,
+            0x00008002204A1101L, 0x1040090010224081L, 0x4300C0200011000DL, 0x8002041001002009L,
+            0x2005000800020411L, 0x110A008408100102L, 0x0006000108008402L, 0x0200002900884402L
+    };
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final long[][] ROOK_TABLE = new long[64][];
+
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final long[] BISHOP_MAGICS = {
+            0x48081010008A2A80L, 0x000948110C0B2081L, 0x0944140400500000L, 0x4984104A00000101L,
+            0x4004030818283008L, 0x0206012462000121L, 0x1A02013008040001L, 0x0001008044200440L,
+            0x0000312208080880L, 0x0220021002009900L, 0x8080880801082000L, 0x000C11040080102AL,
+            0x1402440421000210L, 0x0010120802080A81L, 0x0080084202104028L, 0x1100002082082082L,
+            0x0008403429080820L, 0x8104868204040412L, 0x6424084043060030L, 0x1108000420401000L,
+            0x9004101202020240L, 0x0032400608200412L, 0x0001009610822080L, 0x0008403429080820L,
+            0x0008068340104200L, 0x0010102858090121L, 0x81004C0018080313L, 0x4048080004820002L,
+            0x000900401C004049L, 0x0009420121C1101CL, 0x4828504005040211L, 0x4828504005040211L,
+            0x0041041381202000L, 0x01008C1005601680L, 0x01D010900002040AL, 0x4040020080080080L,
+            0x4801080200802200L, 0x4801080200802200L, 0x0010046108108080L, 0x90409090810A0220L,
+            0x8004020242201020L, 0x8004020242201020L, 0x0202010028020480L, 0x0000041144000801L,
+            0x00002000A4021080L, 0x0504090045040200L, 0x8182041102094400L, 0x0550008100480101L,
+            0xC002080404040400L, 0x0382004108292000L, 0x12000100A8040020L, 0xA005020442088020L,
+            0x2000001102020300L, 0x000021E0420C8808L, 0x3060200484888400L, 0x01280101021A0802L,
+            0x1030820110010500L, 0x0080012608025800L, 0x0002810084008800L, 0x800080000C208800L,
+            0xA408002140028204L, 0x0010006020322084L, 0x0210401044110050L, 0x40106000A1160020L
+    };
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final long[][] BISHOP_TABLE = new long[64][];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            initSquare(sq, ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_TABLE);
+            initSquare(sq, BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_TABLE);
+        }
+    }
+
+    private Magics() {}
+
+    public static long rookAttacks(int sq, long occupied) {
+        return ROOK_TABLE[sq][(int) (((occupied & ROOK_MASKS[sq]) * ROOK_MAGICS[sq]) >>> ROOK_SHIFTS[sq])];
+    }
+
+    public static long bishopAttacks(int sq, long occupied) {
+        return BISHOP_TABLE[sq][(int) (((occupied & BISHOP_MASKS[sq]) * BISHOP_MAGICS[sq]) >>> BISHOP_SHIFTS[sq])];
+    }
+
+    public static long queenAttacks(int sq, long occupied) {
+        return rookAttacks(sq, occupied) | bishopAttacks(sq, occupied);
+    }
+
+    private static void initSquare(int sq, int[][] directions, long[] masks, long[] magics, int[] shifts, long[][] tables) {
+        long mask = relevantBlockers(sq, directions);
+        int bits = Long.bitCount(mask);
+        long[] table = new long[1 << bits];
+
+        masks[sq] = mask;
+        shifts[sq] = 64 - bits;
+        tables[sq] = table;
+
+        // Enumerate every subset of the blocker mask (carry-rippler) and store its attack set
+        long subset = 0L;
+        do {
+            table[(int) ((subset * magics[sq]) >>> shifts[sq])] = slidingAttacks(sq, subset, directions);
+            subset = (subset - mask) & mask;
+        } while (subset != 0);
+    }
+
+    /**
+     * Squares whose occupancy affects a slider on sq. Edge squares are left out
+     * since a piece standing on them can't block anything further along the ray.
+     */
+    private static long relevantBlockers(int sq, int[][] directions) {
+        long mask = 0L;
+        for (int[] d : directions) {
+            int c = (sq & 7) + d[0];
+            int r = (sq >>> 3) + d[1];
+            while (r + d[1] >= 0 && r + d[1] < 8 && c + d[0] >= 0 && c + d[0] < 8) {
+                mask |= 1L << Bitboards.square(r, c);
+                c += d[0];
+                r += d[1];
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Reference attack generation by walking each ray until it hits a blocker.
+     */
+    private static long slidingAttacks(int sq, long occupied, int[][] directions) {
+        long attacks = 0L;
+        for (int[] d : directions) {
+            int c = (sq & 7) + d[0];
+            int r = (sq >>> 3) + d[1];
+            while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                long bit = 1L << Bitboards.square(r, c);
+                attacks |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                c += d[0];
+                r += d[1];
+            }
+        }
+        return attacks;
+    }
+}
@@ -0,0 +1,14 @@
+package com.edwardhicks.chess.book;
+
+import com.edwardhicks.chess.Move;
+import com.edwardhicks.chess.PackedMove;
+
+/**
+ * A book move for the current position, packed (see PackedMove) and with its weight from the book.
+ */
+public record BookMove(int move, int weight) {
+
+    public Move toMove() {
+        return PackedMove.toMove(move);
+    }
+}
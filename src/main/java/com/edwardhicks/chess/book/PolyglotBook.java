@@ -0,0 +1,169 @@
+package com.edwardhicks.chess.book;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.MoveList;
+import com.edwardhicks.chess.PackedMove;
+
+import static com.edwardhicks.chess.PackedMove.NO_PIECE;
+import static com.edwardhicks.chess.bitboard.Bitboards.*;
+
+/**
+ * Opening book in Polyglot .bin format, read through a memory map so the book stays in the page
+ * cache instead of the heap. The file is a sorted array of 16 byte big-endian entries: key (8),
+ * move (2), weight (2), learn (4). A lookup binary searches the map for the first entry with the
+ * position's key and reads the run of entries after it.
+ *
+ * Books over 2GB are mapped in several regions, each a whole number of entries.
+ */
+public class PolyglotBook implements AutoCloseable {
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int ENTRIES_PER_REGION_BITS = 26;  // 1GB regions
+    private static final int ENTRIES_PER_REGION = 1 << ENTRIES_PER_REGION_BITS;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    private final long entries;
+    private final PolyglotKeys keys;
+
+    /**
+     * A book keyed with the standard Polyglot keys, which is every book made by Polyglot.
+     */
+    public PolyglotBook(Path book) throws IOException {
+        this(book, PolyglotKeys.standard());
+    }
+
+    public PolyglotBook(Path book, PolyglotKeys keys) throws IOException {
+        this.channel = FileChannel.open(book, StandardOpenOption.READ);
+        this.keys = keys;
+        long size = channel.size();
+        if (size % ENTRY_BYTES != 0) {
+            channel.close();
+            throw new IOException("Not a Polyglot book, size isn't a multiple of " + ENTRY_BYTES + ": " + book);
+        }
+        this.entries = size / ENTRY_BYTES;
+        this.regions = new MappedByteBuffer[(int) ((entries + ENTRIES_PER_REGION - 1) >>> ENTRIES_PER_REGION_BITS)];
+        for (int i = 0; i < regions.length; i++) {
+            long start = (long) i * ENTRIES_PER_REGION * ENTRY_BYTES;
+            regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, (long) ENTRIES_PER_REGION * ENTRY_BYTES));
+        }
+    }
+
+    /**
+     * Book moves for the position, in book order (highest weight first in books made by Polyglot).
+     * Entries that aren't legal here, from a hash collision or a broken book, are left out.
+     */
+    public List<BookMove> lookup(GameState gameState) {
+        List<BookMove> moves = new ArrayList<>();
+        long key = keys.key(gameState);
+        long entry = firstEntry(key);
+        if (entry == entries) {
+            return moves;
+        }
+
+        MoveList legalMoves = new MoveList();
+        gameState.getValidMoves(legalMoves);
+        for (; entry < entries && key(entry) == key; entry++) {
+            int move = toLegalMove(region(entry).getShort(offset(entry) + 8), legalMoves);
+            if (move != PackedMove.NONE) {
+                moves.add(new BookMove(move, region(entry).getShort(offset(entry) + 10) & 0xFFFF));
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * A book move picked at random in proportion to the weights, or NONE when the position isn't in the book.
+     */
+    public int pickMove(GameState gameState, RandomGenerator random) {
+        List<BookMove> moves = lookup(gameState);
+        long total = 0;
+        for (BookMove move : moves) {
+            total += move.weight();
+        }
+        if (total == 0) {
+            return moves.isEmpty() ? PackedMove.NONE : moves.getFirst().move();
+        }
+        long pick = random.nextLong(total);
+        for (BookMove move : moves) {
+            pick -= move.weight();
+            if (pick < 0) {
+                return move.move();
+            }
+        }
+        return PackedMove.NONE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Index of the first entry whose key is at least key (keys compare unsigned), entries if there is none.
+     */
+    private long firstEntry(long key) {
+        long low = 0;
+        long high = entries;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(key(mid), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < entries && key(low) == key ? low : entries;
+    }
+
+    private long key(long entry) {
+        return region(entry).getLong(offset(entry));
+    }
+
+    private MappedByteBuffer region(long entry) {
+        return regions[(int) (entry >>> ENTRIES_PER_REGION_BITS)];
+    }
+
+    private static int offset(long entry) {
+        return (int) (entry & (ENTRIES_PER_REGION - 1)) * ENTRY_BYTES;
+    }
+
+    /**
+     * Polyglot packs a move as to file, to rank, from file, from rank (3 bits each, ranks counted from
+     * rank 1) and a promotion piece, and writes castling as the king taking its own rook.
+     */
+    private static int toLegalMove(short bookMove, MoveList legalMoves) {
+        int end = square(7 - ((bookMove >>> 3) & 7), bookMove & 7);
+        int start = square(7 - ((bookMove >>> 9) & 7), (bookMove >>> 6) & 7);
+        int promotionType = (bookMove >>> 12) & 7;  // 1 knight .. 4 queen, the same as our piece types
+
+        for (int i = 0; i < legalMoves.size(); i++) {
+            int move = legalMoves.get(i);
+            if (PackedMove.start(move) != start) {
+                continue;
+            }
+            int moveEnd = PackedMove.end(move);
+            if (PackedMove.isCastleMove(move)) {
+                int rookCol = moveEnd > start ? 7 : 0;
+                if (end == square(start >>> 3, rookCol) || end == moveEnd) {  // Some books write e1g1
+                    return move;
+                }
+                continue;
+            }
+            int promotion = PackedMove.promotion(move);
+            if (moveEnd == end && (promotion == NO_PIECE ? promotionType == 0 : promotion % 6 == promotionType)) {
+                return move;
+            }
+        }
+        return PackedMove.NONE;
+    }
+}
@@ -0,0 +1,123 @@
+package com.edwardhicks.chess.book;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.edwardhicks.chess.CastleRights;
+import com.edwardhicks.chess.GameState;
+
+import static com.edwardhicks.chess.bitboard.Bitboards.*;
+
+/**
+ * Polyglot position keys. Books are indexed by a Zobrist hash built from the 781 fixed "Random64"
+ * numbers published with the Polyglot book format: 768 for pieces, 4 for castle rights, 8 for the
+ * en passant file and 1 for white to move.
+ *
+ * standard() uses the published table, bundled as polyglot-random64.txt. load(Path) reads another
+ * table from any text holding the 781 values as 16 digit hex numbers in order, such as the C array
+ * from the format description.
+ */
+public final class PolyglotKeys {
+
+    public static final int KEY_COUNT = 781;
+
+    private static final int CASTLE_OFFSET = 768;
+    private static final int EN_PASSANT_OFFSET = 772;
+    private static final int TURN_OFFSET = 780;
+    private static final Pattern HEX_64 = Pattern.compile("\\b(?:0[xX])?([0-9A-Fa-f]{16})(?:[uU][lL]{0,2})?\\b");
+    private static final String STANDARD_TABLE = "polyglot-random64.txt";
+
+    private static final class Standard {  // loaded on first use
+        static final PolyglotKeys KEYS = loadStandard();
+    }
+
+    private final long[] random64;
+
+    public PolyglotKeys(long[] random64) {
+        if (random64.length != KEY_COUNT) {
+            throw new IllegalArgumentException("Polyglot needs " + KEY_COUNT + " keys, got " + random64.length);
+        }
+        this.random64 = random64.clone();
+    }
+
+    /**
+     * The keys every Polyglot book is made with.
+     */
+    public static PolyglotKeys standard() {
+        return Standard.KEYS;
+    }
+
+    public static PolyglotKeys load(Path table) throws IOException {
+        return parse(Files.readString(table, StandardCharsets.US_ASCII), table.toString());
+    }
+
+    private static PolyglotKeys loadStandard() {
+        try (InputStream in = PolyglotKeys.class.getResourceAsStream(STANDARD_TABLE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing resource " + STANDARD_TABLE);
+            }
+            return parse(new String(in.readAllBytes(), StandardCharsets.US_ASCII), STANDARD_TABLE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static PolyglotKeys parse(String text, String table) throws IOException {
+        Matcher matcher = HEX_64.matcher(text);
+        long[] keys = new long[KEY_COUNT];
+        int count = 0;
+        while (matcher.find()) {
+            if (count == KEY_COUNT) {
+                throw new IOException("More than " + KEY_COUNT + " 64-bit numbers in " + table);
+            }
+            keys[count++] = Long.parseUnsignedLong(matcher.group(1), 16);
+        }
+        if (count != KEY_COUNT) {
+            throw new IOException("Expected " + KEY_COUNT + " 64-bit numbers in " + table + ", found " + count);
+        }
+        return new PolyglotKeys(keys);
+    }
+
+    /**
+     * Polyglot key of the current position.
+     */
+    public long key(GameState gameState) {
+        long key = 0L;
+        for (int piece = 0; piece < 12; piece++) {
+            // Polyglot orders pieces black pawn, white pawn, black knight, ... and counts ranks from rank 1
+            int kind = 2 * (piece % 6) + (piece / 6 == WHITE ? 1 : 0);
+            long pieces = gameState.getPieceBitboard(piece);
+            while (pieces != 0) {
+                int sq = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                key ^= random64[64 * kind + 8 * (7 - (sq >>> 3)) + (sq & 7)];
+            }
+        }
+
+        int rights = gameState.getCastleRights();
+        if ((rights & CastleRights.WKS) != 0) key ^= random64[CASTLE_OFFSET];
+        if ((rights & CastleRights.WQS) != 0) key ^= random64[CASTLE_OFFSET + 1];
+        if ((rights & CastleRights.BKS) != 0) key ^= random64[CASTLE_OFFSET + 2];
+        if ((rights & CastleRights.BQS) != 0) key ^= random64[CASTLE_OFFSET + 3];
+
+        // The en passant file only counts if a pawn of the side to move could actually capture there
+        int enPassant = gameState.getEnPassantSquare();
+        if (enPassant >= 0) {
+            int us = gameState.whiteToMove ? WHITE : BLACK;
+            if ((PAWN_ATTACKS[1 - us][enPassant] & gameState.getPieceBitboard(us * 6 + PAWN)) != 0) {
+                key ^= random64[EN_PASSANT_OFFSET + (enPassant & 7)];
+            }
+        }
+
+        if (gameState.whiteToMove) {
+            key ^= random64[TURN_OFFSET];
+        }
+        return key;
+    }
+}
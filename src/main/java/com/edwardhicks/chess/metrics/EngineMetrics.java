@@ -0,0 +1,296 @@
+package com.edwardhicks.chess.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Process wide search and move generation counters, exposed as an MXBean and, optionally, as a
+ * Prometheus text endpoint.
+ *
+ * Every counter is a LongAdder, which spreads updates from different threads over separate cells,
+ * so threads recording at the same time don't contend. Searches go further and count in plain
+ * fields, adding them here every 1024 nodes (Search.TIME_CHECK_INTERVAL).
+ *
+ * The move generation counters (getValidMoves and squareUnderAttack calls, the legal move
+ * histogram) would be updated on every node of a search or perft, so GameState only records them
+ * when the system property chess.metrics.movegen is true. Otherwise they stay at zero and the
+ * check costs nothing, the JIT folds the constant away.
+ *
+ * Nodes per second is sampled once every SAMPLE_MILLIS by a daemon thread and read from the last
+ * sample, so any number of clients can read it without disturbing each other.
+ *
+ * publish() registers the MXBean and starts the sampler. If the system property chess.metrics.port
+ * is set it also serves the counters at http://localhost:port/metrics in the Prometheus text format.
+ */
+public final class EngineMetrics implements EngineMetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.edwardhicks.chess:type=EngineMetrics";
+    public static final String PORT_PROPERTY = "chess.metrics.port";
+    public static final String MOVEGEN_PROPERTY = "chess.metrics.movegen";
+
+    /**
+     * Whether GameState records recordValidMoves and recordSquareUnderAttack, read once at startup.
+     */
+    public static final boolean MOVEGEN = Boolean.getBoolean(MOVEGEN_PROPERTY);
+
+    static final long SAMPLE_MILLIS = 1000;
+
+    private static final int[] LEGAL_MOVES_BOUNDS = {0, 5, 10, 20, 30, 40, 50, 75, 100};
+    private static final EngineMetrics INSTANCE = new EngineMetrics();
+
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder validMovesCalls = new LongAdder();
+    private final LongAdder legalMovesGenerated = new LongAdder();
+    private final LongAdder[] legalMovesHistogram = new LongAdder[LEGAL_MOVES_BOUNDS.length + 1];
+    private final LongAdder squareUnderAttackCalls = new LongAdder();
+    private final LongAdder transpositionProbes = new LongAdder();
+    private final LongAdder transpositionHits = new LongAdder();
+    private final LongAdder betaCutoffs = new LongAdder();
+    private final LongAdder firstMoveCutoffs = new LongAdder();
+    private final LongAdder interiorNodes = new LongAdder();
+    private final LongAdder movesSearched = new LongAdder();
+
+    private volatile double nodesPerSecond;  // over the last sample window
+    private long sampleNanos = System.nanoTime();  // start of the current window, only the sampler touches these
+    private long sampleNodes;
+
+    private boolean published;
+
+    private EngineMetrics() {
+        for (int i = 0; i < legalMovesHistogram.length; i++) {
+            legalMovesHistogram[i] = new LongAdder();
+        }
+    }
+
+    public static EngineMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the MXBean and starts the nodes per second sampler, and the Prometheus endpoint if
+     * chess.metrics.port is set. Calling it again does nothing.
+     */
+    public static synchronized void publish() {
+        if (INSTANCE.published) {
+            return;
+        }
+        INSTANCE.published = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // registered by another class loader's copy, its counters are the ones shown
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+        }
+
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(INSTANCE::sample, SAMPLE_MILLIS, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+
+        String port = System.getProperty(PORT_PROPERTY);
+        if (port != null) {
+            try {
+                new PrometheusEndpoint(Integer.parseInt(port), INSTANCE).start();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not serve metrics on port " + port, e);
+            }
+        }
+    }
+
+    public void recordValidMoves(int legalMoves) {
+        validMovesCalls.increment();
+        legalMovesGenerated.add(legalMoves);
+        int bucket = 0;
+        while (bucket < LEGAL_MOVES_BOUNDS.length && legalMoves > LEGAL_MOVES_BOUNDS[bucket]) {
+            bucket++;
+        }
+        legalMovesHistogram[bucket].increment();
+    }
+
+    public void recordSquareUnderAttack() {
+        squareUnderAttackCalls.increment();
+    }
+
+    /**
+     * Adds work counted by a search since it last reported.
+     */
+    public void recordSearchWork(long nodes, long transpositionProbes, long transpositionHits, long betaCutoffs,
+                                 long firstMoveCutoffs, long interiorNodes, long movesSearched) {
+        this.nodes.add(nodes);
+        this.transpositionProbes.add(transpositionProbes);
+        this.transpositionHits.add(transpositionHits);
+        this.betaCutoffs.add(betaCutoffs);
+        this.firstMoveCutoffs.add(firstMoveCutoffs);
+        this.interiorNodes.add(interiorNodes);
+        this.movesSearched.add(movesSearched);
+    }
+
+    public void recordSearch() {
+        searches.increment();
+    }
+
+    /**
+     * Ends the current sample window, setting nodes per second from the nodes searched during it.
+     */
+    synchronized void sample() {
+        long now = System.nanoTime();
+        long total = nodes.sum();
+        // After a reset the total can be below the last sample, count the window from zero
+        long windowNodes = total - (total < sampleNodes ? 0 : sampleNodes);
+        nodesPerSecond = now == sampleNanos ? 0 : windowNodes * 1e9 / (now - sampleNanos);
+        sampleNanos = now;
+        sampleNodes = total;
+    }
+
+    @Override
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    @Override
+    public double getNodesPerSecond() {
+        return nodesPerSecond;
+    }
+
+    @Override
+    public long getSearches() {
+        return searches.sum();
+    }
+
+    @Override
+    public long getValidMovesCalls() {
+        return validMovesCalls.sum();
+    }
+
+    @Override
+    public long getLegalMovesGenerated() {
+        return legalMovesGenerated.sum();
+    }
+
+    @Override
+    public double getAverageLegalMoves() {
+        return ratio(legalMovesGenerated.sum(), validMovesCalls.sum());
+    }
+
+    @Override
+    public int[] getLegalMovesBucketBounds() {
+        return LEGAL_MOVES_BOUNDS.clone();
+    }
+
+    @Override
+    public long[] getLegalMovesHistogram() {
+        long[] counts = new long[legalMovesHistogram.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = legalMovesHistogram[i].sum();
+        }
+        return counts;
+    }
+
+    @Override
+    public long getSquareUnderAttackCalls() {
+        return squareUnderAttackCalls.sum();
+    }
+
+    @Override
+    public long getTranspositionProbes() {
+        return transpositionProbes.sum();
+    }
+
+    @Override
+    public long getTranspositionHits() {
+        return transpositionHits.sum();
+    }
+
+    @Override
+    public double getTranspositionHitRate() {
+        return ratio(transpositionHits.sum(), transpositionProbes.sum());
+    }
+
+    @Override
+    public long getBetaCutoffs() {
+        return betaCutoffs.sum();
+    }
+
+    @Override
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs.sum();
+    }
+
+    @Override
+    public double getFirstMoveCutoffRate() {
+        return ratio(firstMoveCutoffs.sum(), betaCutoffs.sum());
+    }
+
+    @Override
+    public double getAverageBranchingFactor() {
+        return ratio(movesSearched.sum(), interiorNodes.sum());
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder adder : new LongAdder[] {nodes, searches, validMovesCalls, legalMovesGenerated, squareUnderAttackCalls,
+                                                transpositionProbes, transpositionHits, betaCutoffs, firstMoveCutoffs,
+                                                interiorNodes, movesSearched}) {
+            adder.reset();
+        }
+        for (LongAdder bucket : legalMovesHistogram) {
+            bucket.reset();
+        }
+    }
+
+    /**
+     * The counters in the Prometheus text exposition format.
+     */
+    public String toPrometheusText() {
+        StringBuilder text = new StringBuilder();
+        counter(text, "chess_nodes_total", "Positions visited by searches", getNodes());
+        counter(text, "chess_searches_total", "Searches completed", getSearches());
+        text.append("# HELP chess_nodes_per_second Positions visited per second over the last sample window\n");
+        text.append("# TYPE chess_nodes_per_second gauge\n");
+        text.append("chess_nodes_per_second ").append(getNodesPerSecond()).append('\n');
+        counter(text, "chess_square_under_attack_calls_total", "GameState.squareUnderAttack calls", getSquareUnderAttackCalls());
+        counter(text, "chess_tt_probes_total", "Transposition table probes", getTranspositionProbes());
+        counter(text, "chess_tt_hits_total", "Transposition table probes that found an entry", getTranspositionHits());
+        counter(text, "chess_beta_cutoffs_total", "Beta cutoffs in the main search", getBetaCutoffs());
+        counter(text, "chess_first_move_cutoffs_total", "Beta cutoffs on the first move searched", getFirstMoveCutoffs());
+        counter(text, "chess_interior_nodes_total", "Interior nodes of the main search", interiorNodes.sum());
+        counter(text, "chess_moves_searched_total", "Moves searched at interior nodes", movesSearched.sum());
+
+        String histogram = "chess_legal_moves";
+        text.append("# HELP ").append(histogram).append(" Legal moves found per getValidMoves call\n");
+        text.append("# TYPE ").append(histogram).append(" histogram\n");
+        long cumulative = 0;
+        long[] counts = getLegalMovesHistogram();
+        for (int i = 0; i < LEGAL_MOVES_BOUNDS.length; i++) {
+            cumulative += counts[i];
+            text.append(histogram).append("_bucket{le=\"").append(LEGAL_MOVES_BOUNDS[i]).append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += counts[LEGAL_MOVES_BOUNDS.length];
+        text.append(histogram).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+        text.append(histogram).append("_sum ").append(getLegalMovesGenerated()).append('\n');
+        text.append(histogram).append("_count ").append(cumulative).append('\n');
+        return text.toString();
+    }
+
+    private static void counter(StringBuilder text, String name, String help, long value) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" counter\n");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static double ratio(long numerator, long denominator) {
+        return denominator == 0 ? 0 : (double) numerator / denominator;
+    }
+}
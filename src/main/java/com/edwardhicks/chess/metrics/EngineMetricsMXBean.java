@@ -0,0 +1,59 @@
+package com.edwardhicks.chess.metrics;
+
+/**
+ * Engine counters as seen from JConsole or any other JMX client, registered as
+ * com.edwardhicks.chess:type=EngineMetrics. Counters are totals since start or the last reset.
+ * The move generation counters (valid moves, legal move histogram, square under attack) stay at
+ * zero unless the engine runs with -Dchess.metrics.movegen=true.
+ */
+public interface EngineMetricsMXBean {
+
+    long getNodes();
+
+    /**
+     * Nodes searched per second over the last one second sample window. Reading it changes nothing.
+     */
+    double getNodesPerSecond();
+
+    long getSearches();
+
+    long getValidMovesCalls();
+
+    long getLegalMovesGenerated();
+
+    double getAverageLegalMoves();
+
+    /**
+     * Upper bounds of the legal move histogram buckets, the last bucket is everything above.
+     */
+    int[] getLegalMovesBucketBounds();
+
+    /**
+     * getValidMoves calls per number of legal moves found, bucketed by getLegalMovesBucketBounds.
+     */
+    long[] getLegalMovesHistogram();
+
+    long getSquareUnderAttackCalls();
+
+    long getTranspositionProbes();
+
+    long getTranspositionHits();
+
+    double getTranspositionHitRate();
+
+    long getBetaCutoffs();
+
+    long getFirstMoveCutoffs();
+
+    /**
+     * Share of beta cutoffs caused by the first move searched, a measure of move ordering.
+     */
+    double getFirstMoveCutoffRate();
+
+    /**
+     * Moves searched per interior node of the main search.
+     */
+    double getAverageBranchingFactor();
+
+    void reset();
+}
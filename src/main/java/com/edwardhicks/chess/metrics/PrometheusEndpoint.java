@@ -0,0 +1,70 @@
+package com.edwardhicks.chess.metrics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Answers every HTTP request on a loopback port with EngineMetrics in the Prometheus text format,
+ * whatever the path. One request per connection, on a single daemon thread, which is plenty for a
+ * scraper polling every few seconds and never keeps the JVM alive. A client that stops sending
+ * before the end of its headers is dropped after READ_TIMEOUT_MILLIS, so it can't hold up the others.
+ */
+final class PrometheusEndpoint implements Runnable {
+
+    static final int READ_TIMEOUT_MILLIS = 5000;
+
+    private final ServerSocket serverSocket;
+    private final EngineMetrics metrics;
+    private final int readTimeoutMillis;
+
+    PrometheusEndpoint(int port, EngineMetrics metrics) throws IOException {
+        this(port, metrics, READ_TIMEOUT_MILLIS);
+    }
+
+    PrometheusEndpoint(int port, EngineMetrics metrics, int readTimeoutMillis) throws IOException {
+        this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        this.metrics = metrics;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    void start() {
+        Thread thread = new Thread(this, "metrics-endpoint");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try (Socket socket = serverSocket.accept()) {
+                socket.setSoTimeout(readTimeoutMillis);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                String line;
+                while ((line = in.readLine()) != null && !line.isEmpty()) {
+                    // request line and headers, the answer is the same for all
+                }
+                byte[] body = metrics.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+                String headers = "HTTP/1.1 200 OK\r\n"
+                                 + "Content-Type: text/plain; version=0.0.4; charset=utf-8\r\n"
+                                 + "Content-Length: " + body.length + "\r\n"
+                                 + "Connection: close\r\n\r\n";
+                OutputStream out = socket.getOutputStream();
+                out.write(headers.getBytes(StandardCharsets.US_ASCII));
+                out.write(body);
+                out.flush();
+            } catch (IOException e) {
+                // the scraper went away or stalled mid request, wait for the next one
+            }
+        }
+    }
+}
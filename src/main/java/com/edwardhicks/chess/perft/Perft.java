@@ -0,0 +1,72 @@
+package com.edwardhicks.chess.perft;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.Move;
+import com.edwardhicks.chess.MoveList;
+
+/**
+ * Performance test: counts the leaf nodes of the legal move tree to a fixed depth.
+ * Known node counts for standard positions make this the correctness check for move generation,
+ * and the time taken makes it the throughput benchmark.
+ */
+public class Perft {
+
+    private Perft() {}
+
+    /**
+     * Number of leaf nodes depth plies below the current position.
+     */
+    public static long perft(GameState gameState, int depth) {
+        MoveList[] moveLists = new MoveList[Math.max(depth, 1)];  // One reusable list per ply
+        for (int i = 0; i < moveLists.length; i++) {
+            moveLists[i] = new MoveList();
+        }
+        return perft(gameState, depth, moveLists);
+    }
+
+    private static long perft(GameState gameState, int depth, MoveList[] moveLists) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        MoveList moves = moveLists[depth - 1];
+        gameState.getValidMoves(moves);
+        if (depth == 1) {  // Bulk count, no need to make the last ply
+            return moves.size();
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            gameState.makeMove(moves.get(i));
+            nodes += perft(gameState, depth - 1, moveLists);
+            gameState.undoMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Leaf node count below each root move, in move generation order.
+     * Comparing this against a reference engine narrows a wrong total down to a single move.
+     */
+    public static Map<Move, Long> divide(GameState gameState, int depth) {
+        Map<Move, Long> counts = new LinkedHashMap<>();
+        for (Move move : gameState.getValidMoves()) {
+            gameState.makeMove(move);
+            counts.put(move, perft(gameState, depth - 1));
+            gameState.undoMove();
+        }
+        return counts;
+    }
+
+    /**
+     * Runs perft and times it.
+     */
+    public static PerftResult run(GameState gameState, int depth) {
+        long start = System.nanoTime();
+        long nodes = perft(gameState, depth);
+        return new PerftResult(depth, nodes, System.nanoTime() - start);
+    }
+}
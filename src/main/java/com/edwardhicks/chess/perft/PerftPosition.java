@@ -0,0 +1,19 @@
+package com.edwardhicks.chess.perft;
+
+import java.util.function.Supplier;
+
+import com.edwardhicks.chess.GameState;
+
+/**
+ * A position with its reference perft counts, expectedNodes[i] being the count at depth i + 1.
+ */
+public record PerftPosition(String name, Supplier<GameState> setup, long[] expectedNodes) {
+
+    public int maxDepth() {
+        return expectedNodes.length;
+    }
+
+    public long expectedNodes(int depth) {
+        return expectedNodes[depth - 1];
+    }
+}
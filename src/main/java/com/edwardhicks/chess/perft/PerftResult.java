@@ -0,0 +1,13 @@
+package com.edwardhicks.chess.perft;
+
+
+public record PerftResult(int depth, long nodes, long nanos) {
+
+    public long nodesPerSecond() {
+        return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+    }
+
+    public long millis() {
+        return nanos / 1_000_000;
+    }
+}
@@ -0,0 +1,87 @@
+package com.edwardhicks.chess.perft;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.Move;
+
+/**
+ * Runs perft over a set of standard positions, checks the node counts and reports nodes per second.
+ *
+ * Usage: PerftSuite [maxDepth] [divide]
+ *   maxDepth caps the depth searched for every position (default 5)
+ *   divide   prints per-root-move counts for any position whose total is wrong
+ */
+public class PerftSuite {
+
+    public static final List<PerftPosition> POSITIONS = List.of(
+        new PerftPosition("Initial position", GameState::new,
+                          new long[] {20, 400, 8_902, 197_281, 4_865_609, 119_060_324}),
+        fen("Kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            48, 2_039, 97_862, 4_085_603, 193_690_690),
+        fen("Position 3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            14, 191, 2_812, 43_238, 674_624, 11_030_083),
+        fen("Position 4", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            6, 264, 9_467, 422_333, 15_833_292),
+        fen("Position 5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            44, 1_486, 62_379, 2_103_487, 89_941_194),
+        fen("Position 6", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            46, 2_079, 89_890, 3_894_594, 164_075_551)
+    );
+
+    private static PerftPosition fen(String name, String fen, long... expectedNodes) {
+        return new PerftPosition(name, () -> GameState.fromFen(fen), expectedNodes);
+    }
+
+    static void main(String[] args) {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        boolean divideOnFailure = args.length > 1 && args[1].equals("divide");
+
+        boolean allPassed = true;
+        for (PerftPosition position : POSITIONS) {
+            allPassed &= runPosition(position, maxDepth, divideOnFailure, System.out);
+        }
+
+        System.out.println(allPassed ? "All perft counts match" : "PERFT FAILURES");
+        if (!allPassed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs one position at increasing depth, returns false on the first wrong count.
+     */
+    public static boolean runPosition(PerftPosition position, int maxDepth, boolean divideOnFailure, PrintStream out) {
+        out.println(position.name());
+        GameState gameState = position.setup().get();
+
+        for (int depth = 1; depth <= Math.min(maxDepth, position.maxDepth()); depth++) {
+            PerftResult result = Perft.run(gameState, depth);
+            long expected = position.expectedNodes(depth);
+            boolean passed = result.nodes() == expected;
+
+            out.printf("  depth %d: %,d nodes (expected %,d) %s  %,d ms  %,d nps%n",
+                              depth, result.nodes(), expected, passed ? "OK" : "FAIL",
+                              result.millis(), result.nodesPerSecond());
+
+            if (!passed) {
+                if (divideOnFailure) {
+                    printDivide(gameState, depth, out);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static void printDivide(GameState gameState, int depth, PrintStream out) {
+        long total = 0;
+        for (Map.Entry<Move, Long> entry : Perft.divide(gameState, depth).entrySet()) {
+            out.println("    " + entry.getKey().toLongAlgebraic() + ": " + entry.getValue());
+            total += entry.getValue();
+        }
+        out.println("    total: " + total);
+    }
+}
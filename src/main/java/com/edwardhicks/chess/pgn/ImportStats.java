@@ -0,0 +1,11 @@
+package com.edwardhicks.chess.pgn;
+
+/**
+ * Totals for an import run. positions counts every position reached, the start of each game included.
+ */
+public record ImportStats(long games, long failedGames, long positions, long millis) {
+
+    public long positionsPerSecond() {
+        return millis > 0 ? positions * 1000 / millis : positions * 1000;
+    }
+}
@@ -0,0 +1,14 @@
+package com.edwardhicks.chess.pgn;
+
+import java.util.Map;
+
+/**
+ * One game as read from a PGN file, the movetext still unparsed. number counts games from 1 in file
+ * order, truncated is set when the movetext was too long to keep whole.
+ */
+public record PgnGame(long number, Map<String, String> tags, String movetext, boolean truncated) {
+
+    public String tag(String name) {
+        return tags.getOrDefault(name, "?");
+    }
+}
@@ -0,0 +1,265 @@
+package com.edwardhicks.chess.pgn;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.MoveList;
+
+/**
+ * Replays every game of a PGN archive. The calling thread streams games off the file into a
+ * bounded queue and a pool of workers parses and replays them, so memory stays flat however big
+ * the file is: at most QUEUE_GAMES_PER_THREAD games per worker are waiting at any time.
+ *
+ * A game that can't be replayed, for whatever reason, is reported as a failed game. Anything
+ * else that stops a worker, such as an exception from the results consumer, stops the import
+ * and is rethrown from importGames.
+ *
+ * Usage: PgnImporter file.pgn [threads]
+ */
+public class PgnImporter {
+
+    private static final int QUEUE_GAMES_PER_THREAD = 64;
+    private static final long FAILURE_CHECK_MILLIS = 100;  // how often a reader waiting on a full queue checks for a failed worker
+    private static final PgnGame END_OF_INPUT = new PgnGame(0, Map.of(), "", false);
+
+    private final int threads;
+
+    public PgnImporter(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one import thread, got " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * One worker per available core.
+     */
+    public PgnImporter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: PgnImporter file.pgn [threads]");
+            System.exit(2);
+        }
+        PgnImporter importer = args.length > 1 ? new PgnImporter(Integer.parseInt(args[1])) : new PgnImporter();
+
+        ImportStats stats = importer.importFile(Path.of(args[0]), result -> {
+            if (result.failed()) {
+                System.err.println("Game " + result.gameNumber() + " (" + result.white() + " - " + result.black()
+                                   + ") stopped after " + result.plies() + " plies: " + result.error());
+            }
+        });
+        System.out.printf("%,d games, %,d failed, %,d positions in %,d ms, %,d positions/s%n",
+                          stats.games(), stats.failedGames(), stats.positions(), stats.millis(), stats.positionsPerSecond());
+    }
+
+    public ImportStats importFile(Path pgn, Consumer<ReplayResult> results) throws IOException {
+        try (Reader reader = Files.newBufferedReader(pgn, StandardCharsets.ISO_8859_1)) {  // PGN's standard charset, and any byte decodes
+            return importGames(reader, results);
+        }
+    }
+
+    /**
+     * Replays every game read from the stream. results is called from the worker threads, once per game, in no particular order.
+     * If it throws, the import stops and the exception is rethrown here.
+     */
+    public ImportStats importGames(Reader reader, Consumer<ReplayResult> results) throws IOException {
+        long startTime = System.currentTimeMillis();
+        BlockingQueue<PgnGame> queue = new ArrayBlockingQueue<>(threads * QUEUE_GAMES_PER_THREAD);
+        LongAdder games = new LongAdder();
+        LongAdder failedGames = new LongAdder();
+        LongAdder positions = new LongAdder();
+        AtomicReference<Throwable> failure = new AtomicReference<>();  // what stopped a worker, if one stopped
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "pgn-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            running.add(workers.submit(() -> {
+                try {
+                    MoveList legalMoves = new MoveList();  // reused for every move of every game
+                    for (PgnGame game = queue.take(); game != END_OF_INPUT; game = queue.take()) {
+                        ReplayResult result = replay(game, legalMoves);
+                        games.increment();
+                        positions.add(result.plies() + 1);
+                        if (result.failed()) {
+                            failedGames.increment();
+                        }
+                        results.accept(result);
+                    }
+                    return null;
+                } catch (RuntimeException | Error e) {
+                    failure.compareAndSet(null, e);  // tells the reader to stop feeding the queue
+                    throw e;
+                }
+            }));
+        }
+
+        boolean allQueued = false;
+        try (PgnReader pgnReader = new PgnReader(reader)) {
+            for (PgnGame game = pgnReader.next(); game != null && put(queue, game, failure); game = pgnReader.next()) {
+                // put does the work
+            }
+            for (int i = 0; i < threads && put(queue, END_OF_INPUT, failure); i++) {
+                // one end marker per worker
+            }
+            allQueued = failure.get() == null;
+        } finally {
+            if (!allQueued) {  // a worker failed or reading did, nobody will wait for the rest
+                workers.shutdownNow();
+            }
+        }
+        if (!allQueued) {
+            rethrow(failure.get());
+        }
+
+        for (Future<?> worker : running) {
+            await(worker);
+        }
+        workers.shutdown();
+
+        return new ImportStats(games.sum(), failedGames.sum(), positions.sum(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Plays through a game's moves, stopping at the first one that can't be read or isn't legal.
+     */
+    public static ReplayResult replay(PgnGame game, MoveList legalMoves) {
+        GameState gameState;
+        try {
+            String fen = game.tags().get("FEN");
+            gameState = fen != null ? GameState.fromFen(fen) : new GameState();
+        } catch (IllegalArgumentException e) {
+            return result(game, 0, e.getMessage());
+        } catch (RuntimeException e) {
+            return result(game, 0, "Couldn't set up the position: " + e);
+        }
+
+        int plies = 0;
+        String movetext = game.movetext();
+        int i = 0;
+        int variationDepth = 0;
+        while (i < movetext.length()) {
+            char ch = movetext.charAt(i);
+            if (ch == '{') {  // Comment
+                int close = movetext.indexOf('}', i);
+                i = close < 0 ? movetext.length() : close + 1;
+                continue;
+            }
+            if (ch == ';') {  // Comment to the end of the line
+                int lineEnd = movetext.indexOf('\n', i);
+                i = lineEnd < 0 ? movetext.length() : lineEnd + 1;
+                continue;
+            }
+            if (ch == '(' || ch == ')') {  // Variations are skipped, only the main line is played
+                variationDepth += ch == '(' ? 1 : -1;
+                i++;
+                continue;
+            }
+            if (Character.isWhitespace(ch)) {
+                i++;
+                continue;
+            }
+
+            int tokenEnd = i;
+            while (tokenEnd < movetext.length() && " \n\t\r{}();".indexOf(movetext.charAt(tokenEnd)) < 0) {
+                tokenEnd++;
+            }
+            String token = movetext.substring(i, tokenEnd);
+            i = tokenEnd;
+            if (variationDepth > 0 || token.startsWith("$")) {  // Moves in variations and numeric annotations
+                continue;
+            }
+            if (token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*")) {
+                break;
+            }
+
+            // Move numbers come as "12." or "12..." and may be stuck to the move, as in "12.Nf3"
+            int numberEnd = 0;
+            while (numberEnd < token.length() && (Character.isDigit(token.charAt(numberEnd)) || token.charAt(numberEnd) == '.')) {
+                numberEnd++;
+            }
+            if (numberEnd > 0 && token.charAt(numberEnd - 1) == '.') {
+                token = token.substring(numberEnd);
+            }
+            if (token.isEmpty()) {
+                continue;
+            }
+
+            try {
+                gameState.getValidMoves(legalMoves);
+                gameState.makeMove(San.resolve(token, legalMoves));
+                plies++;
+            } catch (IllegalArgumentException e) {
+                return result(game, plies, e.getMessage());
+            } catch (RuntimeException e) {  // a bug, but it should only cost this game
+                return result(game, plies, "Replay failed at " + token + ": " + e);
+            }
+        }
+
+        return result(game, plies, game.truncated() ? "Movetext too long, truncated" : null);
+    }
+
+    private static ReplayResult result(PgnGame game, int plies, String error) {
+        return new ReplayResult(game.number(), game.tag("White"), game.tag("Black"), game.tag("Result"), plies, error);
+    }
+
+    /**
+     * Queues the game, waiting for room as long as no worker has failed. False if one has.
+     */
+    private static boolean put(BlockingQueue<PgnGame> queue, PgnGame game, AtomicReference<Throwable> failure) {
+        try {
+            while (failure.get() == null) {
+                if (queue.offer(game, FAILURE_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading games", e);
+        }
+    }
+
+    private static void await(Future<?> worker) {
+        try {
+            worker.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            rethrow(e.getCause());
+        }
+    }
+
+    private static void rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException e) {
+            throw e;
+        }
+        if (cause instanceof Error e) {
+            throw e;
+        }
+        throw new IllegalStateException("PGN import worker failed", cause);
+    }
+}
@@ -0,0 +1,144 @@
+package com.edwardhicks.chess.pgn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads games one at a time from a PGN stream. A game runs from its tags to the next game's tags,
+ * the movetext parser stops at the result token.
+ *
+ * The stream is read a line at a time through a buffer, so the file is never held in memory, only
+ * the game being read. A line longer than MAX_MOVETEXT_CHARS is cut there and the rest of it skipped,
+ * and a game whose movetext grows past MAX_MOVETEXT_CHARS is cut short and marked truncated, so a
+ * corrupt file can't exhaust memory either, not even one without line breaks.
+ */
+public class PgnReader implements Closeable {
+
+    public static final int MAX_MOVETEXT_CHARS = 1 << 20;
+
+    private final Reader reader;
+    private final char[] buffer = new char[1 << 16];
+    private int position;
+    private int limit;
+    private final StringBuilder line = new StringBuilder();
+    private boolean lineTruncated;  // the last line read was longer than MAX_MOVETEXT_CHARS
+    private boolean skipLineFeed;  // the last line ended in \r, a \n right after it belongs to the same line end
+    private String pendingLine;  // first tag line of the next game, read while finishing the previous one
+    private long gamesRead;
+
+    public PgnReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * The next game, or null at the end of the stream.
+     */
+    public PgnGame next() throws IOException {
+        Map<String, String> tags = new LinkedHashMap<>();
+        StringBuilder movetext = new StringBuilder();
+        boolean truncated = false;
+        boolean sawMovetext = false;
+
+        boolean inComment = false;  // {comments} can span lines and contain anything
+        String line = pendingLine != null ? pendingLine : readLine();
+        pendingLine = null;
+        for (; line != null; line = readLine()) {
+            String trimmed = line.strip();
+            if (!inComment && trimmed.startsWith("[")) {
+                if (sawMovetext) {  // Tags after movetext start the next game
+                    pendingLine = line;
+                    break;
+                }
+                parseTag(trimmed, tags);
+            } else if (!trimmed.isEmpty() && !trimmed.startsWith("%")) {  // % lines are escaped, ignore them
+                sawMovetext = true;  // even if the line is too long to keep
+                if (movetext.length() + trimmed.length() < MAX_MOVETEXT_CHARS) {
+                    movetext.append(trimmed).append('\n');  // Keep line ends, they close ; comments
+                } else {
+                    truncated = true;
+                }
+                truncated |= lineTruncated;
+                inComment = endsInComment(trimmed, inComment);
+            }
+        }
+
+        if (tags.isEmpty() && !sawMovetext) {
+            return null;
+        }
+        return new PgnGame(++gamesRead, tags, movetext.toString(), truncated);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * The next line without its line end, like BufferedReader.readLine, but never longer than
+     * MAX_MOVETEXT_CHARS: the rest of a longer line is read and dropped.
+     */
+    private String readLine() throws IOException {
+        line.setLength(0);
+        lineTruncated = false;
+        boolean read = false;
+        while (true) {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return read ? line.toString() : null;
+                }
+            }
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (buffer[position] == '\n') {
+                    position++;
+                    continue;
+                }
+            }
+
+            read = true;
+            int start = position;
+            while (position < limit && buffer[position] != '\n' && buffer[position] != '\r') {
+                position++;
+            }
+            int room = MAX_MOVETEXT_CHARS - line.length();
+            if (position - start > room) {
+                lineTruncated = true;
+            }
+            line.append(buffer, start, Math.min(position - start, room));
+            if (position < limit) {
+                skipLineFeed = buffer[position] == '\r';
+                position++;
+                return line.toString();
+            }
+        }
+    }
+
+    private static void parseTag(String line, Map<String, String> tags) {
+        int space = line.indexOf(' ');
+        int open = line.indexOf('"');
+        int close = line.lastIndexOf('"');
+        if (space > 1 && open > space && close > open) {
+            tags.put(line.substring(1, space), line.substring(open + 1, close).replace("\\\"", "\"").replace("\\\\", "\\"));
+        }
+    }
+
+    private static boolean endsInComment(String line, boolean inComment) {
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (inComment) {
+                inComment = ch != '}';
+            } else if (ch == '{') {
+                inComment = true;
+            } else if (ch == ';') {  // Rest of line comment
+                return false;
+            }
+        }
+        return inComment;
+    }
+}
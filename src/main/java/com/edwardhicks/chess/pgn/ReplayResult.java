@@ -0,0 +1,11 @@
+package com.edwardhicks.chess.pgn;
+
+/**
+ * Outcome of replaying one game: how many plies were played, and the error if the game stopped early.
+ */
+public record ReplayResult(long gameNumber, String white, String black, String result, int plies, String error) {
+
+    public boolean failed() {
+        return error != null;
+    }
+}
@@ -0,0 +1,104 @@
+package com.edwardhicks.chess.pgn;
+
+import com.edwardhicks.chess.MoveList;
+import com.edwardhicks.chess.PackedMove;
+
+import static com.edwardhicks.chess.PackedMove.NO_PIECE;
+import static com.edwardhicks.chess.bitboard.Bitboards.*;
+
+/**
+ * Standard Algebraic Notation, e.g. "Nbd7", "exd6", "e8=Q+", "O-O-O".
+ */
+public final class San {
+
+    private San() {}
+
+    /**
+     * The legal move a SAN token names. Throws IllegalArgumentException if it names no legal move,
+     * or more than one.
+     */
+    public static int resolve(String san, MoveList legalMoves) {
+        int length = san.length();
+        while (length > 0 && "+#!?".indexOf(san.charAt(length - 1)) >= 0) {  // Check marks and annotations
+            length--;
+        }
+        String move = san.substring(0, length);
+
+        if (move.equals("O-O") || move.equals("0-0")) {
+            return castle(san, legalMoves, true);
+        }
+        if (move.equals("O-O-O") || move.equals("0-0-0")) {
+            return castle(san, legalMoves, false);
+        }
+
+        int promotionType = -1;
+        int equals = move.indexOf('=');
+        if (equals >= 0 && equals == move.length() - 2) {
+            promotionType = pieceType(move.charAt(equals + 1));
+            move = move.substring(0, equals);
+        } else if (move.length() > 2 && "NBRQ".indexOf(move.charAt(move.length() - 1)) >= 0) {  // e8Q
+            promotionType = pieceType(move.charAt(move.length() - 1));
+            move = move.substring(0, move.length() - 1);
+        }
+
+        if (move.length() < 2) {
+            throw new IllegalArgumentException("Not a SAN move: " + san);
+        }
+        int pieceType = "NBRQK".indexOf(move.charAt(0)) >= 0 ? pieceType(move.charAt(0)) : PAWN;
+        int end = squareOf(move.charAt(move.length() - 2), move.charAt(move.length() - 1), san);
+
+        // Whatever is left between the piece letter and the destination narrows down the start square
+        String from = move.substring(pieceType == PAWN ? 0 : 1, move.length() - 2).replace("x", "");
+        int fromCol = -1;
+        int fromRow = -1;
+        for (char ch : from.toCharArray()) {
+            if (ch >= 'a' && ch <= 'h') {
+                fromCol = ch - 'a';
+            } else if (ch >= '1' && ch <= '8') {
+                fromRow = '8' - ch;
+            } else {
+                throw new IllegalArgumentException("Not a SAN move: " + san);
+            }
+        }
+
+        int found = PackedMove.NONE;
+        for (int i = 0; i < legalMoves.size(); i++) {
+            int candidate = legalMoves.get(i);
+            int start = PackedMove.start(candidate);
+            int promotion = PackedMove.promotion(candidate);
+            if (PackedMove.end(candidate) != end
+                || PackedMove.pieceMoved(candidate) % 6 != pieceType
+                || PackedMove.isCastleMove(candidate)
+                || (fromCol >= 0 && (start & 7) != fromCol)
+                || (fromRow >= 0 && (start >>> 3) != fromRow)
+                || (promotion == NO_PIECE ? promotionType >= 0 : promotion % 6 != promotionType)) {
+                continue;
+            }
+            if (found != PackedMove.NONE) {
+                throw new IllegalArgumentException("Ambiguous move: " + san);
+            }
+            found = candidate;
+        }
+        if (found == PackedMove.NONE) {
+            throw new IllegalArgumentException("Illegal move: " + san);
+        }
+        return found;
+    }
+
+    private static int castle(String san, MoveList legalMoves, boolean kingside) {
+        for (int i = 0; i < legalMoves.size(); i++) {
+            int move = legalMoves.get(i);
+            if (PackedMove.isCastleMove(move) && (PackedMove.end(move) > PackedMove.start(move)) == kingside) {
+                return move;
+            }
+        }
+        throw new IllegalArgumentException("Illegal move: " + san);
+    }
+
+    private static int squareOf(char file, char rank, String san) {
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+            throw new IllegalArgumentException("Not a SAN move: " + san);
+        }
+        return square('8' - rank, file - 'a');
+    }
+}
@@ -0,0 +1,160 @@
+package com.edwardhicks.chess.search;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.PieceSquareTables;
+
+import static com.edwardhicks.chess.PieceSquareTables.MAX_PHASE;
+import static com.edwardhicks.chess.bitboard.Bitboards.*;
+
+/**
+ * Static evaluation in centipawns, from the point of view of the side to move.
+ *
+ * Material and piece-square scores are kept up to date by GameState as moves are made. Pawn
+ * structure (doubled, isolated, backward and passed pawns) depends on the pawns alone, so it is
+ * cached in a PawnHashTable by pawn key. The king's pawn shield also depends on where the king is
+ * and is cheap, so it is computed every time. Middlegame and endgame scores are then blended by
+ * the game phase.
+ */
+public class Evaluator {
+
+    // Indexed by piece type: pawn, knight, bishop, rook, queen, king
+    public static final int[] PIECE_VALUES = PieceSquareTables.PIECE_VALUES;
+
+    private static final int DOUBLED_MIDDLEGAME = -10, DOUBLED_ENDGAME = -20;  // per extra pawn on a file
+    private static final int ISOLATED_MIDDLEGAME = -10, ISOLATED_ENDGAME = -15;
+    private static final int BACKWARD_MIDDLEGAME = -8, BACKWARD_ENDGAME = -10;
+    // Indexed by rank counted from the pawn's own side, 1 being its starting rank
+    private static final int[] PASSED_MIDDLEGAME = {0, 5, 10, 15, 25, 40, 60, 0};
+    private static final int[] PASSED_ENDGAME = {0, 10, 20, 35, 60, 90, 130, 0};
+    private static final int SHIELD_NEAR = 10, SHIELD_FAR = 5;  // per pawn one and two ranks in front of a castled king
+
+    private static final long[] FILES = new long[8];
+    private static final long[] ADJACENT_FILES = new long[8];
+    private static final long[][] AHEAD = new long[2][8];  // [color][row], the rows in front of a pawn on that row
+    private static final long[][] PASSED_SPAN = new long[2][64];  // [color][square], enemy pawns here stop a passer
+    private static final long[][] SUPPORT_SPAN = new long[2][64];  // [color][square], own pawns here can still defend it
+
+    static {
+        for (int file = 0; file < 8; file++) {
+            FILES[file] = 0x0101010101010101L << file;
+        }
+        for (int file = 0; file < 8; file++) {
+            ADJACENT_FILES[file] = (file > 0 ? FILES[file - 1] : 0) | (file < 7 ? FILES[file + 1] : 0);
+        }
+        for (int row = 0; row < 8; row++) {
+            AHEAD[WHITE][row] = (1L << (row * 8)) - 1;  // rows above, toward rank 8
+            AHEAD[BLACK][row] = row == 7 ? 0 : -1L << ((row + 1) * 8);
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            int file = sq & 7, row = sq >>> 3;
+            for (int color = WHITE; color <= BLACK; color++) {
+                PASSED_SPAN[color][sq] = AHEAD[color][row] & (FILES[file] | ADJACENT_FILES[file]);
+                SUPPORT_SPAN[color][sq] = ~AHEAD[color][row] & ADJACENT_FILES[file];
+            }
+        }
+    }
+
+    private Evaluator() {}
+
+    /**
+     * Evaluates with the pawn structure looked up in, or added to, the pawn hash table.
+     */
+    public static int evaluate(GameState gameState, PawnHashTable pawnHashTable) {
+        long pawns = pawnHashTable.probe(gameState.getPawnKey());
+        if (pawns == PawnHashTable.MISS) {
+            pawns = evaluatePawns(gameState);
+            pawnHashTable.store(gameState.getPawnKey(), pawns);
+        }
+        return blend(gameState, pawns);
+    }
+
+    /**
+     * Evaluates without a pawn hash table, computing the pawn structure.
+     */
+    public static int evaluate(GameState gameState) {
+        return blend(gameState, evaluatePawns(gameState));
+    }
+
+    private static int blend(GameState gameState, long pawns) {
+        int middlegame = gameState.getMiddlegameScore() + PawnHashTable.middlegame(pawns) + kingShield(gameState);
+        int endgame = gameState.getEndgameScore() + PawnHashTable.endgame(pawns);
+        int phase = Math.min(gameState.getPhase(), MAX_PHASE);  // promotions can take it past the start
+        int score = (middlegame * phase + endgame * (MAX_PHASE - phase)) / MAX_PHASE;
+        return gameState.whiteToMove ? score : -score;
+    }
+
+    /**
+     * Pawn structure terms from white's point of view, packed as in PawnHashTable.
+     */
+    static long evaluatePawns(GameState gameState) {
+        int middlegame = 0, endgame = 0;
+        for (int color = WHITE; color <= BLACK; color++) {
+            int sign = color == WHITE ? 1 : -1;
+            long own = gameState.getPieceBitboard(color * 6 + PAWN);
+            long enemy = gameState.getPieceBitboard((1 - color) * 6 + PAWN);
+
+            for (int file = 0; file < 8; file++) {
+                int extra = Long.bitCount(own & FILES[file]) - 1;
+                if (extra > 0) {
+                    middlegame += sign * extra * DOUBLED_MIDDLEGAME;
+                    endgame += sign * extra * DOUBLED_ENDGAME;
+                }
+            }
+
+            for (long pawns = own; pawns != 0; pawns &= pawns - 1) {
+                int sq = Long.numberOfTrailingZeros(pawns);
+                int file = sq & 7, row = sq >>> 3;
+
+                if ((own & ADJACENT_FILES[file]) == 0) {
+                    middlegame += sign * ISOLATED_MIDDLEGAME;
+                    endgame += sign * ISOLATED_ENDGAME;
+                } else {
+                    // No pawn beside or behind can defend it, and an enemy pawn guards the square in front
+                    int stop = color == WHITE ? sq - 8 : sq + 8;
+                    if ((own & SUPPORT_SPAN[color][sq]) == 0 && (PAWN_ATTACKS[color][stop] & enemy) != 0) {
+                        middlegame += sign * BACKWARD_MIDDLEGAME;
+                        endgame += sign * BACKWARD_ENDGAME;
+                    }
+                }
+
+                // Only the front pawn of a file can be passed
+                if ((enemy & PASSED_SPAN[color][sq]) == 0 && (own & FILES[file] & AHEAD[color][row]) == 0) {
+                    int rank = color == WHITE ? 7 - row : row;
+                    middlegame += sign * PASSED_MIDDLEGAME[rank];
+                    endgame += sign * PASSED_ENDGAME[rank];
+                }
+            }
+        }
+        return PawnHashTable.pack(middlegame, endgame);
+    }
+
+    /**
+     * Bonus for own pawns in front of a king that has castled or gone to a wing, white's point of view.
+     */
+    private static int kingShield(GameState gameState) {
+        int score = 0;
+        for (int color = WHITE; color <= BLACK; color++) {
+            long king = gameState.getPieceBitboard(color * 6 + KING);
+            if (king == 0) {
+                continue;
+            }
+            int sq = Long.numberOfTrailingZeros(king);
+            int file = sq & 7, row = sq >>> 3;
+            if (file >= 3 && file <= 4) {
+                continue;  // still in the centre
+            }
+            long pawns = gameState.getPieceBitboard(color * 6 + PAWN) & (FILES[file] | ADJACENT_FILES[file]);
+            int step = color == WHITE ? -1 : 1;
+            int near = row + step, far = row + 2 * step;
+            int shield = 0;
+            if (near >= 0 && near < 8) {
+                shield += SHIELD_NEAR * Long.bitCount(pawns & 0xFFL << (near * 8));
+            }
+            if (far >= 0 && far < 8) {
+                shield += SHIELD_FAR * Long.bitCount(pawns & 0xFFL << (far * 8));
+            }
+            score += color == WHITE ? shield : -shield;
+        }
+        return score;
+    }
+}
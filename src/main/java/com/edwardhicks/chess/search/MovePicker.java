@@ -0,0 +1,165 @@
+package com.edwardhicks.chess.search;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.MoveList;
+import com.edwardhicks.chess.PackedMove;
+
+import static com.edwardhicks.chess.search.Evaluator.PIECE_VALUES;
+
+/**
+ * Hands out the legal moves of a position one at a time, best first as far as can be guessed,
+ * generating them in stages only as they are asked for:
+ *  1. the hash move (checked for legality, it may come from a colliding key)
+ *  2. captures and promotions, most valuable victim first and, between equal victims, least
+ *     valuable attacker first (MVV-LVA)
+ *  3. the two killer moves of this ply, quiet moves that cut off at a sibling node
+ *  4. the other quiet moves, by their history score
+ * A node that cuts off early never generates or sorts the later stages. Within a stage the best
+ * remaining move is picked on each call rather than sorting the whole list up front.
+ *
+ * Quiescence uses resetCaptures instead, which hands out only stage 2.
+ *
+ * One picker per ply, reused through reset.
+ */
+final class MovePicker {
+
+    private static final int HASH_MOVE = 0;
+    private static final int GENERATE_CAPTURES = 1;
+    private static final int CAPTURES = 2;
+    private static final int KILLERS = 3;
+    private static final int GENERATE_QUIETS = 4;
+    private static final int QUIETS = 5;
+    private static final int DONE = 6;
+
+    private final MoveList moves = new MoveList();
+    private int[] scores = new int[256];
+    private final int[] history;  // shared with the search, see Search.history
+    private GameState gameState;
+    private int hashMove;
+    private int killer1;
+    private int killer2;
+    private int stage;
+    private int index;
+    private boolean capturesOnly;
+
+    MovePicker(int[] history) {
+        this.history = history;
+    }
+
+    void reset(GameState gameState, int hashMove, int killer1, int killer2) {
+        this.gameState = gameState;
+        this.hashMove = hashMove;
+        this.killer1 = killer1;
+        this.killer2 = killer2;
+        this.stage = HASH_MOVE;
+        this.capturesOnly = false;
+    }
+
+    /**
+     * Hands out only the captures and promotions, for quiescence search.
+     */
+    void resetCaptures(GameState gameState) {
+        reset(gameState, PackedMove.NONE, PackedMove.NONE, PackedMove.NONE);
+        this.stage = GENERATE_CAPTURES;
+        this.capturesOnly = true;
+    }
+
+    /**
+     * The next legal move, NONE once every move has been handed out.
+     */
+    int next() {
+        while (true) {
+            switch (stage) {
+                case HASH_MOVE -> {
+                    stage = GENERATE_CAPTURES;
+                    if (hashMove != PackedMove.NONE && gameState.isLegalMove(hashMove)) {
+                        return hashMove;
+                    }
+                    hashMove = PackedMove.NONE;
+                }
+                case GENERATE_CAPTURES -> {
+                    moves.clear();
+                    gameState.getValidCaptures(moves);
+                    scoreMoves(true);
+                    stage = CAPTURES;
+                }
+                case KILLERS -> {
+                    // A killer is a packed move, with what it captured then, so a killer that
+                    // would capture something here doesn't match and is left to the captures
+                    int killer = index == 0 ? killer1 : killer2;
+                    if (++index == 2) {
+                        stage = GENERATE_QUIETS;
+                    }
+                    if (killer != PackedMove.NONE && killer != hashMove && gameState.isLegalMove(killer)) {
+                        return killer;
+                    }
+                    if (index == 1) {
+                        killer1 = PackedMove.NONE;  // not played, don't skip it among the quiet moves
+                    } else {
+                        killer2 = PackedMove.NONE;
+                    }
+                }
+                case GENERATE_QUIETS -> {
+                    moves.clear();
+                    gameState.getValidQuietMoves(moves);
+                    scoreMoves(false);
+                    stage = QUIETS;
+                }
+                case CAPTURES, QUIETS -> {
+                    int move = pickBest();
+                    if (move == PackedMove.NONE) {
+                        index = 0;
+                        stage = stage == CAPTURES && !capturesOnly ? KILLERS : DONE;
+                    } else if (move != hashMove && move != killer1 && move != killer2) {  // Already tried
+                        return move;
+                    }
+                }
+                default -> {
+                    return PackedMove.NONE;
+                }
+            }
+        }
+    }
+
+    private void scoreMoves(boolean captures) {
+        if (scores.length < moves.size()) {
+            scores = new int[moves.size()];
+        }
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int pieceMoved = PackedMove.pieceMoved(move);
+            if (captures) {
+                // Victim value dominates, the attacker's type only breaks ties, and a promotion
+                // counts the piece it promotes to as won
+                int victim = PackedMove.isCapture(move) ? PIECE_VALUES[PackedMove.pieceCaptured(move) % 6] : 0;
+                int promotion = PackedMove.isPromotion(move) ? PIECE_VALUES[PackedMove.promotion(move) % 6] : 0;
+                scores[i] = (victim + promotion) * 8 - pieceMoved % 6;
+            } else {
+                scores[i] = history[pieceMoved * 64 + PackedMove.end(move)];
+            }
+        }
+        index = 0;
+    }
+
+    /**
+     * Swaps the best scored of the remaining moves to the front of them and returns it, NONE if
+     * there are none left.
+     */
+    private int pickBest() {
+        int size = moves.size();
+        if (index >= size) {
+            return PackedMove.NONE;
+        }
+        int best = index;
+        for (int i = index + 1; i < size; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        moves.swap(index, best);
+        int score = scores[index];
+        scores[index] = scores[best];
+        scores[best] = score;
+        return moves.get(index++);
+    }
+}
@@ -0,0 +1,149 @@
+package com.edwardhicks.chess.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.metrics.EngineMetrics;
+
+/**
+ * Lazy SMP: several threads search the same root position independently, each on its own copy of
+ * the game, and share one transposition table. Threads learn from each other only through the
+ * table, and odd-numbered helpers search one ply deeper than the main thread so the threads spread
+ * out over different depths instead of repeating each other's work.
+ *
+ * The calling thread is the main thread: its time limits decide when everyone stops, and the
+ * result comes from whichever thread completed the deepest iteration. Each thread keeps its Search,
+ * and with it the pawn hash, history and killers, from one call to the next, so only one search
+ * may run at a time.
+ */
+public class ParallelSearch implements AutoCloseable {
+
+    private final int threads;
+    private final TranspositionTable transpositionTable;
+    private final ExecutorService helpers;
+    private final Search main;
+    private final List<Search> helperSearches = new ArrayList<>();  // kept between searches for their pawn hash and history
+    private volatile AtomicBoolean currentStop = new AtomicBoolean();
+
+    public ParallelSearch(int threads, TranspositionTable transpositionTable) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one search thread, got " + threads);
+        }
+        this.threads = threads;
+        this.transpositionTable = transpositionTable;
+        this.helpers = threads > 1 ? Executors.newFixedThreadPool(threads - 1, runnable -> {
+            Thread thread = new Thread(runnable, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        this.main = new Search(new GameState(), transpositionTable, 0, currentStop);
+        for (int i = 1; i < threads; i++) {
+            helperSearches.add(new Search(new GameState(), transpositionTable, i % 2, currentStop));
+        }
+    }
+
+    /**
+     * One search thread per available core.
+     */
+    public ParallelSearch(TranspositionTable transpositionTable) {
+        this(Runtime.getRuntime().availableProcessors(), transpositionTable);
+    }
+
+    /**
+     * Searches the current position. The game state itself isn't touched, every thread plays on a copy.
+     */
+    public SearchResult search(GameState gameState, SearchLimits limits) {
+        return search(gameState, limits, result -> {});
+    }
+
+    /**
+     * As above, and progress gets each iteration the main thread completes. Its node count
+     * includes the helpers' nodes so far, read without synchronization, so it is approximate.
+     */
+    public SearchResult search(GameState gameState, SearchLimits limits, Consumer<SearchResult> progress) {
+        return search(gameState, limits, new AtomicBoolean(), progress);
+    }
+
+    /**
+     * As above, and the search returns its best result so far once stop is set. The caller makes the
+     * flag before handing the search to another thread, so a stop that comes before the search has
+     * started isn't lost.
+     */
+    public SearchResult search(GameState gameState, SearchLimits limits, AtomicBoolean stop,
+                               Consumer<SearchResult> progress) {
+        currentStop = stop;
+        transpositionTable.newSearch();  // once for all threads, before any of them store entries
+
+        // Helpers run without their own time limits, they stop when the main thread does
+        SearchLimits helperLimits = new SearchLimits(limits.maxDepth(), SearchLimits.NO_TIME_LIMIT, SearchLimits.NO_TIME_LIMIT);
+        List<Future<SearchResult>> helperResults = new ArrayList<>();
+        for (Search helper : helperSearches) {
+            helper.reset(new GameState(gameState), stop);
+            helperResults.add(helpers.submit(() -> helper.iterate(helperLimits)));
+        }
+
+        main.reset(new GameState(gameState), stop);
+        main.setIterationListener(result -> {
+            long nodes = result.nodes();
+            for (Search helper : helperSearches) {
+                nodes += helper.getNodes();
+            }
+            progress.accept(new SearchResult(result.bestMove(), result.score(), result.depth(),
+                                             result.principalVariation(), nodes, result.millis()));
+        });
+        SearchResult best = main.iterate(limits);
+        long millis = best.millis();
+        long nodes = main.getNodes();
+        stop.set(true);
+
+        for (int i = 0; i < helperResults.size(); i++) {
+            SearchResult result = await(helperResults.get(i));
+            nodes += helperSearches.get(i).getNodes();
+            if (result != null && result.depth() > best.depth()) {
+                best = result;
+            }
+        }
+
+        EngineMetrics.get().recordSearch();  // one search, however many threads ran it
+        return new SearchResult(best.bestMove(), best.score(), best.depth(), best.principalVariation(),
+                                nodes, millis);
+    }
+
+    /**
+     * Stops the search that is running now, which then returns its best result so far. To stop a
+     * search that may not have started yet, pass a stop flag to search instead.
+     */
+    public void stop() {
+        currentStop.set(true);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public void close() {
+        stop();
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    private static SearchResult await(Future<SearchResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search helper failed", e.getCause());
+        }
+    }
+}
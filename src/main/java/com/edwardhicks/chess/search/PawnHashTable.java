@@ -0,0 +1,61 @@
+package com.edwardhicks.chess.search;
+
+/**
+ * Fixed-size cache of pawn structure scores, keyed by GameState.getPawnKey. Pawns move in only a
+ * few of the moves a search plays, so nearly every probe hits and the pawn terms are computed
+ * once per pawn structure rather than once per node.
+ *
+ * Each entry is two longs, the key and the packed middlegame/endgame score, and a new score always
+ * replaces whatever was in its slot. Not thread safe: every Search has its own.
+ */
+public class PawnHashTable {
+
+    public static final long MISS = Long.MIN_VALUE;  // no packed score has this value
+
+    private static final int DEFAULT_ENTRIES = 1 << 14;
+
+    private final long[] table;
+    private final int mask;
+
+    public PawnHashTable() {
+        this(DEFAULT_ENTRIES);
+    }
+
+    /**
+     * entries is rounded down to a power of two.
+     */
+    public PawnHashTable(int entries) {
+        int size = Integer.highestOneBit(Math.max(1, entries));
+        this.table = new long[2 * size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * The packed score stored for this pawn key, or MISS. Decode with middlegame and endgame.
+     */
+    public long probe(long pawnKey) {
+        int slot = 2 * ((int) pawnKey & mask);
+        if (table[slot] == pawnKey) {  // an empty slot matches key 0, no pawns, whose score is 0 anyway
+            return table[slot + 1];
+        }
+        return MISS;
+    }
+
+    public void store(long pawnKey, long packed) {
+        int slot = 2 * ((int) pawnKey & mask);
+        table[slot] = pawnKey;
+        table[slot + 1] = packed;
+    }
+
+    public static long pack(int middlegame, int endgame) {
+        return (long) middlegame << 32 | (endgame & 0xFFFFFFFFL);
+    }
+
+    public static int middlegame(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    public static int endgame(long packed) {
+        return (int) packed;
+    }
+}
@@ -0,0 +1,364 @@
+package com.edwardhicks.chess.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.Move;
+import com.edwardhicks.chess.MoveList;
+import com.edwardhicks.chess.PackedMove;
+import com.edwardhicks.chess.metrics.EngineMetrics;
+
+import static com.edwardhicks.chess.search.TranspositionTable.*;
+
+/**
+ * Negamax alpha-beta search with iterative deepening.
+ * Each iteration searches one ply deeper than the last, so there is always a complete result to
+ * fall back on when the time runs out.
+ */
+public class Search {
+
+    public static final int MAX_PLY = 128;
+    public static final int INFINITY = 1_000_000;
+    public static final int MATE_SCORE = 100_000;
+
+    private static final int TIME_CHECK_INTERVAL = 1024;  // nodes between clock reads and metrics reports
+
+    private static final int DEFAULT_HASH_MB = 16;
+
+    private static final int MAX_HISTORY = 1 << 20;  // history scores are halved once one gets this big
+
+    private GameState gameState;
+    private final TranspositionTable transpositionTable;
+    private final int depthOffset;  // helper threads search this many plies past the current iteration
+    private AtomicBoolean sharedStop;  // set by whoever coordinates this search, never cleared here
+    private final MovePicker[] movePickers = new MovePicker[MAX_PLY];  // one per ply, reused between nodes
+    private final PawnHashTable pawnHashTable = new PawnHashTable();  // per search, it isn't thread safe
+    private final int[][] killers = new int[MAX_PLY][2];  // two quiet moves per ply that caused a cutoff
+    private final StaticExchange staticExchange = new StaticExchange();
+    private final int[] history = new int[12 * 64];  // [piece * 64 + end square], how often a quiet move cut off
+    private final int[][] pvTable = new int[MAX_PLY][MAX_PLY];  // triangular principal variation table
+    private final int[] pvLength = new int[MAX_PLY];
+
+    private Consumer<SearchResult> iterationListener = result -> {};
+
+    private long nodes;
+    private long hardDeadline;
+
+    // Counted here and added to EngineMetrics every TIME_CHECK_INTERVAL nodes, so the shared
+    // counters stay off the per node path
+    private long reportedNodes;
+    private long transpositionProbes;
+    private long transpositionHits;
+    private long betaCutoffs;
+    private long firstMoveCutoffs;
+    private long interiorNodes;
+    private long interiorMovesSearched;
+    private boolean aborted;
+    private volatile boolean stopRequested;
+
+    public Search(GameState gameState) {
+        this(gameState, new TranspositionTable(DEFAULT_HASH_MB));
+    }
+
+    public Search(GameState gameState, TranspositionTable transpositionTable) {
+        this(gameState, transpositionTable, 0, new AtomicBoolean());
+    }
+
+    Search(GameState gameState, TranspositionTable transpositionTable, int depthOffset, AtomicBoolean sharedStop) {
+        this.gameState = gameState;
+        this.transpositionTable = transpositionTable;
+        this.depthOffset = depthOffset;
+        this.sharedStop = sharedStop;
+        for (int i = 0; i < MAX_PLY; i++) {
+            movePickers[i] = new MovePicker(history);
+        }
+    }
+
+    /**
+     * Points this search at another game and stop flag, keeping the pawn hash, history and
+     * killers learned so far, so a thread can reuse one Search from move to move.
+     */
+    void reset(GameState gameState, AtomicBoolean sharedStop) {
+        this.gameState = gameState;
+        this.sharedStop = sharedStop;
+    }
+
+    /**
+     * Called with the result of every completed iteration, on the searching thread, e.g. to report
+     * progress while the search runs.
+     */
+    public void setIterationListener(Consumer<SearchResult> iterationListener) {
+        this.iterationListener = iterationListener;
+    }
+
+    /**
+     * Searches the current position. The game state is left as it was found.
+     */
+    public SearchResult search(SearchLimits limits) {
+        transpositionTable.newSearch();
+        SearchResult result = iterate(limits);
+        EngineMetrics.get().recordSearch();
+        return result;
+    }
+
+    /**
+     * As search, but leaves the table's generation alone and doesn't count the search in
+     * EngineMetrics. For threads sharing a table, where the coordinator does both once.
+     */
+    SearchResult iterate(SearchLimits limits) {
+        long startNanos = System.nanoTime();
+        hardDeadline = deadline(startNanos, limits.hardTimeMillis());
+        long softDeadline = deadline(startNanos, limits.softTimeMillis());
+        nodes = 0;
+        reportedNodes = 0;
+        aborted = false;
+        stopRequested = false;
+        for (int[] plyKillers : killers) {
+            plyKillers[0] = plyKillers[1] = PackedMove.NONE;
+        }
+        ageHistory();  // still a fair guess for the next move's search, but should count for less than new results
+
+        SearchResult result = null;
+        int maxDepth = Math.min(limits.maxDepth(), MAX_PLY - 1);
+        for (int iteration = 1; iteration <= maxDepth; iteration++) {
+            int depth = Math.min(iteration + depthOffset, maxDepth);
+            int score = negamax(depth, 0, -INFINITY, INFINITY);
+            if (aborted) {  // Partial iterations aren't trustworthy, keep the previous one
+                break;
+            }
+
+            result = buildResult(score, depth, startNanos);
+            iterationListener.accept(result);
+            if (pvLength[0] == 0 || Math.abs(score) >= MATE_SCORE - MAX_PLY || depth == maxDepth
+                || System.nanoTime() >= softDeadline) {
+                break;  // No legal moves, a forced mate found, or no time for another iteration
+            }
+        }
+
+        if (result == null) {  // Not even depth 1 finished, play any legal move
+            MoveList moves = new MoveList();
+            gameState.getValidMoves(moves);
+            Move fallback = moves.isEmpty() ? null : PackedMove.toMove(moves.get(0));
+            result = new SearchResult(fallback, 0, 0, fallback == null ? List.of() : List.of(fallback),
+                                      nodes, (System.nanoTime() - startNanos) / 1_000_000);
+        }
+        reportMetrics();
+        return result;
+    }
+
+    /**
+     * Asks a running search to return as soon as possible. Safe to call from another thread.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        if (depth == 0) {
+            return quiescence(ply, alpha, beta);
+        }
+        pvLength[ply] = 0;
+        nodes++;
+        if ((nodes % TIME_CHECK_INTERVAL) == 0) {
+            checkTime();
+        }
+        if (aborted) {
+            return 0;
+        }
+
+        if (ply > 0 && gameState.isRepetition()) {
+            return 0;
+        }
+        if (ply == MAX_PLY - 1) {
+            return Evaluator.evaluate(gameState, pawnHashTable);
+        }
+
+        // A deep enough result for this position may already be known from another move order
+        long key = gameState.getZobristKey();
+        long entry = transpositionTable.probe(key);
+        transpositionProbes++;
+        int hashMove = PackedMove.NONE;
+        if (entry != NO_ENTRY) {
+            transpositionHits++;
+            hashMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = TranspositionTable.score(entry, ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == EXACT || (bound == LOWER_BOUND && score >= beta) || (bound == UPPER_BOUND && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        // The best move last time is the most likely to be best again, so it goes first
+        MovePicker movePicker = movePickers[ply];
+        movePicker.reset(gameState, hashMove, killers[ply][0], killers[ply][1]);
+
+        int originalAlpha = alpha;
+        int bestMove = hashMove;
+        int movesSearched = 0;
+        for (int move = movePicker.next(); move != PackedMove.NONE; move = movePicker.next()) {
+            movesSearched++;
+            gameState.makeMove(move);
+            int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            gameState.undoMove();
+
+            if (aborted) {
+                return 0;
+            }
+            if (score > alpha) {
+                alpha = score;
+                bestMove = move;
+                updatePrincipalVariation(ply, move);
+                if (alpha >= beta) {
+                    betaCutoffs++;
+                    if (movesSearched == 1) {
+                        firstMoveCutoffs++;
+                    }
+                    if (!PackedMove.isCapture(move) && !PackedMove.isPromotion(move)) {
+                        rememberQuietCutoff(move, depth, ply);
+                    }
+                    break;  // Opponent won't allow this line
+                }
+            }
+        }
+
+        if (movesSearched == 0) {
+            return gameState.inCheck() ? -MATE_SCORE + ply : 0;  // Prefer the quickest mate
+        }
+        interiorNodes++;
+        interiorMovesSearched += movesSearched;
+
+        int bound = alpha >= beta ? LOWER_BOUND : alpha > originalAlpha ? EXACT : UPPER_BOUND;
+        transpositionTable.store(key, bestMove, alpha, depth, bound, ply);
+        return alpha;
+    }
+
+    /**
+     * Searches captures and promotions only until the position is quiet, so the evaluation isn't
+     * taken in the middle of an exchange. The side to move can always decline to capture, so the
+     * static evaluation is a lower bound ("stand pat"), and captures that lose material by static
+     * exchange evaluation are skipped. In check there is no standing pat, every evasion is searched.
+     */
+    private int quiescence(int ply, int alpha, int beta) {
+        pvLength[ply] = 0;
+        nodes++;
+        if ((nodes % TIME_CHECK_INTERVAL) == 0) {
+            checkTime();
+        }
+        if (aborted) {
+            return 0;
+        }
+
+        if (ply > 0 && gameState.isRepetition()) {
+            return 0;
+        }
+        boolean inCheck = gameState.inCheck();
+        if (ply == MAX_PLY - 1) {
+            return inCheck ? 0 : Evaluator.evaluate(gameState, pawnHashTable);
+        }
+
+        MovePicker movePicker = movePickers[ply];
+        if (inCheck) {
+            movePicker.reset(gameState, PackedMove.NONE, PackedMove.NONE, PackedMove.NONE);
+        } else {
+            int standPat = Evaluator.evaluate(gameState, pawnHashTable);
+            if (standPat >= beta) {
+                return standPat;
+            }
+            alpha = Math.max(alpha, standPat);
+            movePicker.resetCaptures(gameState);
+        }
+
+        int movesSearched = 0;
+        for (int move = movePicker.next(); move != PackedMove.NONE; move = movePicker.next()) {
+            movesSearched++;
+            if (!inCheck && staticExchange.evaluate(gameState, move) < 0) {
+                continue;  // Loses material even if the opponent only recaptures
+            }
+            gameState.makeMove(move);
+            int score = -quiescence(ply + 1, -beta, -alpha);
+            gameState.undoMove();
+
+            if (aborted) {
+                return 0;
+            }
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) {
+                    break;
+                }
+            }
+        }
+
+        if (inCheck && movesSearched == 0) {
+            return -MATE_SCORE + ply;
+        }
+        return alpha;
+    }
+
+    private void checkTime() {
+        reportMetrics();
+        if (stopRequested || sharedStop.get() || System.nanoTime() >= hardDeadline) {
+            aborted = true;
+        }
+    }
+
+    private void reportMetrics() {
+        EngineMetrics.get().recordSearchWork(nodes - reportedNodes, transpositionProbes, transpositionHits, betaCutoffs,
+                                             firstMoveCutoffs, interiorNodes, interiorMovesSearched);
+        reportedNodes = nodes;
+        transpositionProbes = transpositionHits = betaCutoffs = firstMoveCutoffs = interiorNodes = interiorMovesSearched = 0;
+    }
+
+    /**
+     * A quiet move that refutes one position often refutes its siblings too, so it becomes a
+     * killer at this ply, and its history score grows with the depth of the subtree it cut off.
+     */
+    private void rememberQuietCutoff(int move, int depth, int ply) {
+        int[] plyKillers = killers[ply];
+        if (plyKillers[0] != move) {
+            plyKillers[1] = plyKillers[0];
+            plyKillers[0] = move;
+        }
+
+        int index = PackedMove.pieceMoved(move) * 64 + PackedMove.end(move);
+        history[index] += depth * depth;
+        if (history[index] > MAX_HISTORY) {
+            ageHistory();
+        }
+    }
+
+    private void ageHistory() {
+        for (int i = 0; i < history.length; i++) {
+            history[i] /= 2;
+        }
+    }
+
+    private void updatePrincipalVariation(int ply, int move) {
+        pvTable[ply][0] = move;
+        System.arraycopy(pvTable[ply + 1], 0, pvTable[ply], 1, pvLength[ply + 1]);
+        pvLength[ply] = pvLength[ply + 1] + 1;
+    }
+
+    private SearchResult buildResult(int score, int depth, long startNanos) {
+        List<Move> principalVariation = new ArrayList<>();
+        for (int i = 0; i < pvLength[0]; i++) {
+            principalVariation.add(PackedMove.toMove(pvTable[0][i]));
+        }
+        Move bestMove = principalVariation.isEmpty() ? null : principalVariation.getFirst();
+        return new SearchResult(bestMove, score, depth, principalVariation, nodes,
+                                (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    private static long deadline(long startNanos, long millis) {
+        return millis == SearchLimits.NO_TIME_LIMIT ? Long.MAX_VALUE : startNanos + millis * 1_000_000;
+    }
+}
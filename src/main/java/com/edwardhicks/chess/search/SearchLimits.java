@@ -0,0 +1,37 @@
+package com.edwardhicks.chess.search;
+
+/**
+ * When to stop searching.
+ * The soft time limit is checked between iterations: no new depth is started after it has passed.
+ * The hard time limit aborts the search mid-iteration, so it is the latest a result is returned.
+ */
+public record SearchLimits(int maxDepth, long softTimeMillis, long hardTimeMillis) {
+
+    public static final long NO_TIME_LIMIT = Long.MAX_VALUE;
+
+    public static SearchLimits depth(int maxDepth) {
+        return new SearchLimits(maxDepth, NO_TIME_LIMIT, NO_TIME_LIMIT);
+    }
+
+    /**
+     * Search as deep as possible for exactly millis, e.g. for a fixed time per move.
+     */
+    public static SearchLimits moveTime(long millis) {
+        return new SearchLimits(Search.MAX_PLY - 1, millis, millis);
+    }
+
+    /**
+     * Search as deep as possible and answer within deadlineMillis.
+     * Half the budget is the soft limit, since an iteration that starts later is unlikely to finish.
+     */
+    public static SearchLimits deadline(long deadlineMillis) {
+        return new SearchLimits(Search.MAX_PLY - 1, deadlineMillis / 2, deadlineMillis);
+    }
+
+    /**
+     * The same time limits, stopping at maxDepth at the latest.
+     */
+    public SearchLimits withMaxDepth(int maxDepth) {
+        return new SearchLimits(maxDepth, softTimeMillis, hardTimeMillis);
+    }
+}
@@ -0,0 +1,16 @@
+package com.edwardhicks.chess.search;
+
+import java.util.List;
+
+import com.edwardhicks.chess.Move;
+
+/**
+ * Outcome of the deepest completed iteration. score is in centipawns from the side to move's view,
+ * mate scores are within Search.MAX_PLY of +/- Search.MATE_SCORE.
+ */
+public record SearchResult(Move bestMove, int score, int depth, List<Move> principalVariation, long nodes, long millis) {
+
+    public long nodesPerSecond() {
+        return millis == 0 ? nodes * 1000 : nodes * 1000 / millis;
+    }
+}
@@ -0,0 +1,115 @@
+package com.edwardhicks.chess.search;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.PackedMove;
+import com.edwardhicks.chess.bitboard.Magics;
+
+import static com.edwardhicks.chess.bitboard.Bitboards.*;
+import static com.edwardhicks.chess.search.Evaluator.PIECE_VALUES;
+
+/**
+ * Static exchange evaluation: the material a capture wins or loses once both sides have
+ * recaptured on its square for as long as it pays, each with its least valuable attacker. Worked
+ * out on bitboards without making any moves, so it is cheap enough to run on every capture in
+ * quiescence.
+ *
+ * Attackers that are revealed behind others (a rook behind a rook, a bishop behind a pawn) join
+ * in as the pieces in front leave. Pins are ignored, and a king only recaptures if nothing defends
+ * the square.
+ *
+ * Keeps its work arrays between calls, so every Search has its own.
+ */
+final class StaticExchange {
+
+    private static final int KING_VALUE = 20_000;  // only ever "captured" when it was the last attacker
+
+    private final long[] pieces = new long[12];
+    private final int[] gain = new int[32];
+
+    /**
+     * Net material won by the capture or promotion, in centipawns. Negative if it loses material.
+     */
+    int evaluate(GameState gameState, int move) {
+        int start = PackedMove.start(move);
+        int end = PackedMove.end(move);
+        int pieceMoved = PackedMove.pieceMoved(move);
+        int mover = pieceMoved / 6;
+
+        long occupied = 0L;
+        for (int piece = 0; piece < 12; piece++) {
+            pieces[piece] = gameState.getPieceBitboard(piece);
+            occupied |= pieces[piece];
+        }
+
+        gain[0] = PackedMove.isCapture(move) ? PIECE_VALUES[PackedMove.pieceCaptured(move) % 6] : 0;
+        int onSquare = value(pieceMoved % 6);  // what the next capture on the square takes
+        if (PackedMove.isPromotion(move)) {
+            int promoted = PIECE_VALUES[PackedMove.promotion(move) % 6];
+            gain[0] += promoted - PIECE_VALUES[PAWN];
+            onSquare = promoted;
+        }
+        if (PackedMove.isEnpassantMove(move)) {
+            occupied &= ~(1L << (mover == WHITE ? end + 8 : end - 8));  // the captured pawn isn't on the end square
+        }
+
+        long from = 1L << start;
+        long bishops = pieces[WHITE * 6 + BISHOP] | pieces[BLACK * 6 + BISHOP] | pieces[WHITE * 6 + QUEEN] | pieces[BLACK * 6 + QUEEN];
+        long rooks = pieces[WHITE * 6 + ROOK] | pieces[BLACK * 6 + ROOK] | pieces[WHITE * 6 + QUEEN] | pieces[BLACK * 6 + QUEEN];
+        long attackers = attackersTo(end, occupied, pieces, bishops, rooks);
+
+        int depth = 0;
+        int side = mover;
+        while (true) {
+            depth++;
+            side = 1 - side;
+            gain[depth] = onSquare - gain[depth - 1];  // if the piece on the square is taken in turn
+            occupied &= ~from;
+            attackers &= occupied;
+            // Sliders behind the piece that just left now see the square
+            attackers |= (Magics.bishopAttacks(end, occupied) & bishops | Magics.rookAttacks(end, occupied) & rooks) & occupied;
+
+            from = 0L;
+            for (int type = PAWN; type <= KING; type++) {
+                long candidates = attackers & pieces[side * 6 + type];
+                if (candidates != 0) {
+                    if (type == KING && (attackers & colorPieces(pieces, 1 - side) & occupied) != 0) {
+                        break;  // the king can't capture into a defended square
+                    }
+                    from = Long.lowestOneBit(candidates);
+                    onSquare = value(type);
+                    break;
+                }
+            }
+            if (from == 0 || depth == gain.length - 1) {
+                break;
+            }
+        }
+
+        // The last entry assumes a recapture that never came, so it is left out
+        while (--depth > 0) {
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+        }
+        return gain[0];
+    }
+
+    private static long attackersTo(int sq, long occupied, long[] pieces, long bishops, long rooks) {
+        return (PAWN_ATTACKS[BLACK][sq] & pieces[WHITE * 6 + PAWN])
+               | (PAWN_ATTACKS[WHITE][sq] & pieces[BLACK * 6 + PAWN])
+               | (KNIGHT_ATTACKS[sq] & (pieces[WHITE * 6 + KNIGHT] | pieces[BLACK * 6 + KNIGHT]))
+               | (KING_ATTACKS[sq] & (pieces[WHITE * 6 + KING] | pieces[BLACK * 6 + KING]))
+               | (Magics.bishopAttacks(sq, occupied) & bishops)
+               | (Magics.rookAttacks(sq, occupied) & rooks);
+    }
+
+    private static long colorPieces(long[] pieces, int color) {
+        long all = 0L;
+        for (int type = PAWN; type <= KING; type++) {
+            all |= pieces[color * 6 + type];
+        }
+        return all;
+    }
+
+    private static int value(int type) {
+        return type == KING ? KING_VALUE : PIECE_VALUES[type];
+    }
+}
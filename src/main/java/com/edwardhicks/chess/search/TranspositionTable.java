@@ -0,0 +1,161 @@
+package com.edwardhicks.chess.search;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size hash table of search results, keyed by Zobrist key and shared between search threads.
+ *
+ * Every entry is two longs, (key ^ data) and data, so no locks are needed: a reader recomputes
+ * key ^ data and only trusts the entry if that matches its key, which rules out entries torn by a
+ * concurrent write as well as entries for other positions.
+ *
+ * Entries sit in buckets of two. The first slot keeps the deepest result (unless it's left over
+ * from an earlier search), the second is always overwritten, so shallow results near the leaves
+ * can't push out expensive ones near the root.
+ *
+ * Data layout:
+ *  bits  0-26  best move (PackedMove)
+ *  bits 27-47  score + SCORE_OFFSET
+ *  bits 48-55  depth
+ *  bits 56-57  bound
+ *  bits 58-63  search generation
+ */
+public class TranspositionTable {
+
+    public static final long NO_ENTRY = 0L;
+
+    // Bound types. 0 is never stored, so data is never NO_ENTRY
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;  // failed high, score is at least this
+    public static final int UPPER_BOUND = 3;  // failed low, score is at most this
+
+    private static final int ENTRY_LONGS = 2;
+    private static final int BUCKET_LONGS = 2 * ENTRY_LONGS;
+    private static final int SCORE_OFFSET = 1 << 20;
+    private static final long MAX_BUCKETS = 1L << 28;  // 8 GB, the most a long[] indexed by int can hold in buckets of four
+
+    private final long[] table;
+    private final long bucketMask;
+    private int generation;
+
+    /**
+     * A table of at most megabytes, rounded down to a power of two and capped at 8 GB.
+     */
+    public TranspositionTable(int megabytes) {
+        long buckets = buckets(megabytes);
+        this.table = new long[(int) (buckets * BUCKET_LONGS)];
+        this.bucketMask = buckets - 1;
+    }
+
+    static long buckets(int megabytes) {
+        long buckets = Long.highestOneBit(Math.max(1, (long) megabytes * 1024 * 1024 / (BUCKET_LONGS * Long.BYTES)));
+        return Math.min(buckets, MAX_BUCKETS);
+    }
+
+    /**
+     * Data stored for this key, or NO_ENTRY. Decode it with the static accessors.
+     */
+    public long probe(long key) {
+        int index = bucketIndex(key);
+        for (int slot = index; slot < index + BUCKET_LONGS; slot += ENTRY_LONGS) {
+            long data = table[slot + 1];
+            if ((table[slot] ^ data) == key && data != NO_ENTRY) {
+                return data;
+            }
+        }
+        return NO_ENTRY;
+    }
+
+    /**
+     * Stores a result. Mate scores are converted from root-relative to node-relative using ply,
+     * so they stay correct when the position is reached again at a different ply.
+     */
+    public void store(long key, int move, int score, int depth, int bound, int ply) {
+        long data = (move & 0x7FFFFFFL)
+                    | (long) (scoreToTable(score, ply) + SCORE_OFFSET) << 27
+                    | (long) Math.min(depth, 0xFF) << 48
+                    | (long) bound << 56
+                    | (long) generation << 58;
+
+        int index = bucketIndex(key);
+        long deepData = table[index + 1];
+        boolean deepSlotFree = deepData == NO_ENTRY
+                               || (table[index] ^ deepData) == key
+                               || generation(deepData) != generation
+                               || depth >= depth(deepData);
+
+        int slot = deepSlotFree ? index : index + ENTRY_LONGS;
+        table[slot] = key ^ data;
+        table[slot + 1] = data;
+    }
+
+    /**
+     * Marks the start of a new search, so entries from earlier searches become replaceable.
+     * Threads sharing the table must not call it themselves, it is called once before they start.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0x3F;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+        generation = 0;
+    }
+
+    /**
+     * Permille of the deep slots used in this search, sampled from the first thousand buckets.
+     */
+    public int hashfull() {
+        int buckets = (int) Math.min(1000, bucketMask + 1);
+        int used = 0;
+        for (int i = 0; i < buckets; i++) {
+            long data = table[i * BUCKET_LONGS + 1];
+            if (data != NO_ENTRY && generation(data) == generation) {
+                used++;
+            }
+        }
+        return used * 1000 / buckets;
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0x7FFFFFFL);
+    }
+
+    public static int score(long data, int ply) {
+        return scoreFromTable((int) ((data >>> 27) & 0x1FFFFF) - SCORE_OFFSET, ply);
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> 48) & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> 56) & 0x3);
+    }
+
+    private static int generation(long data) {
+        return (int) (data >>> 58);
+    }
+
+    private int bucketIndex(long key) {
+        return (int) (key & bucketMask) * BUCKET_LONGS;
+    }
+
+    private static int scoreToTable(int score, int ply) {
+        if (score >= Search.MATE_SCORE - Search.MAX_PLY) {
+            return score + ply;
+        } else if (score <= -Search.MATE_SCORE + Search.MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int scoreFromTable(int score, int ply) {
+        if (score >= Search.MATE_SCORE - Search.MAX_PLY) {
+            return score - ply;
+        } else if (score <= -Search.MATE_SCORE + Search.MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+}
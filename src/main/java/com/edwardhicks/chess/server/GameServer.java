@@ -0,0 +1,271 @@
+package com.edwardhicks.chess.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.GameStatus;
+import com.edwardhicks.chess.MoveList;
+import com.edwardhicks.chess.PackedMove;
+import com.edwardhicks.chess.metrics.EngineMetrics;
+
+/**
+ * Hosts many games at once over a line based protocol on a loopback socket. Every connection is
+ * handled on its own virtual thread, so tens of thousands of mostly idle clients cost little more
+ * than their sessions. A connection works on one session at a time; sessions outlive connections
+ * and can be picked up again with attach.
+ *
+ * Commands, each answered by one line starting with "ok" or "error":
+ *  new [fen]     start a session from the initial position or a FEN, replies with its id
+ *  attach <id>   work on an existing session
+ *  move <move>   play a move in long algebraic notation, e.g. e2e4 or e7e8q
+ *  undo          take back the last move
+ *  moves         the legal moves
+ *  status        playing, check, checkmate or stalemate, then the FEN
+ *  peek <id>     FEN and move count of any session, read from its last snapshot without waiting for it
+ *  stats         commands handled, mean and max latency in microseconds, and whether it is evicted
+ *  close         end the session
+ *  quit          close the connection
+ *
+ * Sessions idle for longer than the idle timeout are evicted to their compact form by a sweeper.
+ *
+ * Usage: GameServer [port] [idleSeconds]
+ */
+public class GameServer implements AutoCloseable {
+
+    private static final int DEFAULT_PORT = 7777;
+    private static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(5);
+
+    private final ServerSocket serverSocket;
+    private final Duration idleTimeout;
+    private final Map<Long, GameSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextSessionId = new AtomicLong(1);
+    private final LongAdder evictions = new LongAdder();
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "session-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Binds to port on the loopback interface, 0 for any free port.
+     */
+    public GameServer(int port, Duration idleTimeout) throws IOException {
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("Idle timeout must be positive, got " + idleTimeout);
+        }
+        this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        this.idleTimeout = idleTimeout;
+    }
+
+    static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Duration idleTimeout = args.length > 1 ? Duration.ofSeconds(Long.parseLong(args[1])) : DEFAULT_IDLE_TIMEOUT;
+        EngineMetrics.publish();
+        try (GameServer server = new GameServer(port, idleTimeout)) {
+            System.out.println("Listening on port " + server.getPort());
+            server.serve();
+        }
+    }
+
+    /**
+     * Accepts connections on the calling thread until the server is closed.
+     */
+    public void serve() throws IOException {
+        long sweepMillis = Math.max(1, idleTimeout.toMillis() / 2);
+        sweeper.scheduleWithFixedDelay(this::evictIdleSessions, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+        try {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                connections.submit(() -> handle(socket));
+            }
+        } catch (SocketException e) {
+            if (!serverSocket.isClosed()) {
+                throw e;
+            }
+            // closed by close(), a normal shutdown
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Latency of one session, or null if there is no such session.
+     */
+    public SessionStats sessionStats(long sessionId) {
+        GameSession session = sessions.get(sessionId);
+        return session == null ? null : session.stats();
+    }
+
+    /**
+     * Evicts every session that has been idle for longer than the idle timeout. Returns how many were evicted.
+     */
+    public int evictIdleSessions() {
+        long idleSince = System.nanoTime() - idleTimeout.toNanos();
+        int evicted = 0;
+        for (GameSession session : sessions.values()) {
+            if (session.evictIfIdle(idleSince)) {
+                evicted++;
+            }
+        }
+        evictions.add(evicted);
+        return evicted;
+    }
+
+    @Override
+    public void close() throws IOException {
+        sweeper.shutdownNow();
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    private void handle(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+            GameSession session = null;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] tokens = line.trim().split("\\s+", 2);
+                String command = tokens[0];
+                String argument = tokens.length > 1 ? tokens[1] : "";
+                if (command.equals("quit")) {
+                    break;
+                }
+
+                String reply;
+                try {
+                    switch (command) {
+                        case "new" -> {
+                            GameState game = argument.isEmpty() ? new GameState() : GameState.fromFen(argument);
+                            session = new GameSession(nextSessionId.getAndIncrement(), game);
+                            sessions.put(session.id(), session);
+                            reply = "ok " + session.id();
+                        }
+                        case "attach" -> {
+                            GameSession found = sessions.get(parseId(argument));
+                            if (found == null) {
+                                throw new IllegalArgumentException("no session " + argument);
+                            }
+                            session = found;
+                            reply = "ok " + session.id();
+                        }
+                        case "peek" -> {
+                            GameSession watched = sessions.get(parseId(argument));
+                            if (watched == null) {
+                                throw new IllegalArgumentException("no session " + argument);
+                            }
+                            reply = "ok " + watched.peek();
+                        }
+                        case "stats" -> {
+                            SessionStats stats = requireSession(session).stats();
+                            reply = "ok " + stats.commands() + " " + stats.meanNanos() / 1000 + " " + stats.maxNanos() / 1000
+                                    + " " + (stats.evicted() ? "evicted" : "live");
+                        }
+                        case "close" -> {
+                            sessions.remove(requireSession(session).id());
+                            session = null;
+                            reply = "ok";
+                        }
+                        default -> reply = requireSession(session).execute(game -> gameCommand(game, command, argument));
+                    }
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    reply = "error " + e.getMessage();
+                } catch (RuntimeException e) {  // a bug, but it should only cost this command
+                    reply = "error internal error: " + e;
+                }
+                if (session != null && session.failed()) {
+                    sessions.remove(session.id(), session);
+                    session = null;
+                }
+                out.println(reply);
+            }
+        } catch (IOException e) {
+            // the client went away, its session stays for a later attach
+        }
+    }
+
+    /**
+     * Commands on the session's game, run under the session's lock.
+     */
+    private static String gameCommand(GameState game, String command, String argument) {
+        switch (command) {
+            case "move" -> {
+                MoveList moves = new MoveList();
+                game.getValidMoves(moves);
+                for (int i = 0; i < moves.size(); i++) {
+                    if (PackedMove.toLongAlgebraic(moves.get(i)).equals(argument)) {
+                        game.makeMove(moves.get(i));
+                        return "ok";
+                    }
+                }
+                throw new IllegalArgumentException("illegal move " + argument);
+            }
+            case "undo" -> {
+                if (game.moveLog.isEmpty()) {
+                    throw new IllegalStateException("nothing to undo");
+                }
+                game.undoMove();
+                return "ok";
+            }
+            case "moves" -> {
+                StringBuilder reply = new StringBuilder("ok");
+                MoveList moves = new MoveList();
+                game.getValidMoves(moves);
+                for (int i = 0; i < moves.size(); i++) {
+                    reply.append(' ').append(PackedMove.toLongAlgebraic(moves.get(i)));
+                }
+                return reply.toString();
+            }
+            case "status" -> {
+                GameStatus status = game.getStatus();
+                String state = status.isCheckmate() ? "checkmate" : status.isStalemate() ? "stalemate"
+                               : status.inCheck() ? "check" : "playing";
+                return "ok " + state + " " + game.toFen();
+            }
+            default -> throw new IllegalArgumentException("unknown command " + command);
+        }
+    }
+
+    private static GameSession requireSession(GameSession session) {
+        if (session == null) {
+            throw new IllegalStateException("no session, use new or attach");
+        }
+        return session;
+    }
+
+    private static long parseId(String id) {
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not a session id: " + id);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.edwardhicks.chess.server;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.Position;
+import com.edwardhicks.chess.store.CompactGame;
+
+/**
+ * One game on the server. All access goes through the session's own lock, so sessions never wait
+ * on each other. The lock is a ReentrantLock rather than synchronized because a virtual thread
+ * blocked in synchronized code keeps its carrier thread.
+ *
+ * An idle session can be evicted: the GameState is replaced by its CompactGame record, and is
+ * replayed from it the next time the session is used. The snapshot for peek goes too, as it holds
+ * the whole move history; an evicted session keeps only the line peek answers with.
+ *
+ * A command that fails with anything but IllegalArgumentException or IllegalStateException may
+ * have left the game half changed, so the session is marked failed and refuses further commands.
+ */
+final class GameSession {
+
+    private final long id;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long lastUsedNanos = System.nanoTime();
+    private volatile boolean failed;
+    private volatile Position position;  // after the last command, for readers that don't take the lock; null while evicted
+    private volatile String evictedPeek;  // what peek answers while evicted, set before position is cleared
+
+    // Guarded by lock
+    private GameState game;
+    private byte[] evicted;
+    private long commands;
+    private long totalNanos;
+    private long maxNanos;
+
+    GameSession(long id, GameState game) {
+        this.id = id;
+        this.game = game;
+        this.position = game.snapshot();
+    }
+
+    long id() {
+        return id;
+    }
+
+    /**
+     * Move count and FEN after the last command, separated by a space. Never blocks, even while a
+     * command is running.
+     */
+    String peek() {
+        Position live = position;
+        // evictedPeek is left in place when the game is restored, so it is there whenever position was null
+        return live != null ? live.plies() + " " + live.toFen() : evictedPeek;
+    }
+
+    long lastUsedNanos() {
+        return lastUsedNanos;
+    }
+
+    /**
+     * True once a command has failed unexpectedly, after which the session can't be used.
+     */
+    boolean failed() {
+        return failed;
+    }
+
+    /**
+     * Runs a command on the game, restoring it first if it was evicted, and records the latency.
+     */
+    String execute(Function<GameState, String> command) {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            if (failed) {
+                throw new IllegalStateException("session " + id + " failed and was closed");
+            }
+            String reply;
+            try {
+                if (game == null) {
+                    game = CompactGame.decode(evicted);
+                    evicted = null;
+                }
+                reply = command.apply(game);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                throw e;  // rejected before the game was changed
+            } catch (RuntimeException e) {
+                failed = true;
+                game = null;
+                throw new IllegalStateException("session " + id + " failed and was closed: " + e, e);
+            }
+            position = game.snapshot();
+
+            long end = System.nanoTime();
+            long nanos = end - start;
+            commands++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            lastUsedNanos = end;
+            return reply;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Parks the game in its compact form if nobody has used it since idleSinceNanos. A session in
+     * use is skipped rather than waited for. True if the session was evicted.
+     */
+    boolean evictIfIdle(long idleSinceNanos) {
+        if (!lock.tryLock()) {
+            return false;
+        }
+        try {
+            if (game == null || lastUsedNanos - idleSinceNanos > 0) {
+                return false;
+            }
+            evicted = CompactGame.encode(game, "*");
+            game = null;
+            evictedPeek = peek();
+            position = null;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    SessionStats stats() {
+        lock.lock();
+        try {
+            return new SessionStats(id, commands, commands == 0 ? 0 : totalNanos / commands, maxNanos, game == null);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.edwardhicks.chess.server;
+
+/**
+ * Command latency of one session, measured from a command being read to its reply being ready.
+ */
+public record SessionStats(long sessionId, long commands, long meanNanos, long maxNanos, boolean evicted) {
+}
@@ -0,0 +1,75 @@
+package com.edwardhicks.chess.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.PackedMove;
+
+import static com.edwardhicks.chess.store.GameStoreFormat.*;
+
+/**
+ * A game as one record of a store file (see GameStoreFormat): its starting position and 2 bytes
+ * per move. About 100 bytes for a typical game, against several kilobytes for a live GameState,
+ * so it also serves to park games in memory.
+ */
+public final class CompactGame {
+
+    private static final String INITIAL_FEN = new GameState().toFen();
+
+    private CompactGame() {}
+
+    /**
+     * The moves played in a game so far. result is "1-0", "0-1", "1/2-1/2" or "*" (anything else is stored as "*").
+     */
+    public static byte[] encode(GameState game, String result) {
+        int plies = game.moveLog.size();
+        if (plies > 0xFFFF) {
+            throw new IllegalArgumentException("Game too long to store: " + plies + " plies");
+        }
+
+        GameState start = new GameState(game);
+        for (int ply = 0; ply < plies; ply++) {
+            start.undoMove();
+        }
+        String fen = start.toFen();
+        byte[] fenBytes = fen.equals(INITIAL_FEN) ? null : fen.getBytes(StandardCharsets.US_ASCII);
+
+        int size = GAME_HEADER_BYTES + (fenBytes != null ? 2 + fenBytes.length : 0) + 2 * plies;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putShort((short) plies).put((byte) resultCode(result)).put((byte) (fenBytes != null ? FLAG_FEN : 0));
+        if (fenBytes != null) {
+            buffer.putShort((short) fenBytes.length).put(fenBytes);
+        }
+        for (int ply = 0; ply < plies; ply++) {
+            buffer.putShort(encodeMove(game.getMove(ply)));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * The game replayed to its last move.
+     */
+    public static GameState decode(byte[] record) {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        int plies = buffer.getShort() & 0xFFFF;
+        buffer.get();  // result
+        GameState game;
+        if ((buffer.get() & FLAG_FEN) != 0) {
+            byte[] fen = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(fen);
+            game = GameState.fromFen(new String(fen, StandardCharsets.US_ASCII));
+        } else {
+            game = new GameState();
+        }
+
+        for (int ply = 0; ply < plies; ply++) {
+            int move = decodeMove(buffer.getShort(), game);
+            if (move == PackedMove.NONE) {
+                throw new IllegalArgumentException("Illegal move at ply " + ply);
+            }
+            game.makeMove(move);
+        }
+        return game;
+    }
+}
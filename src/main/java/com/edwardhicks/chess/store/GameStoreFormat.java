@@ -0,0 +1,54 @@
+package com.edwardhicks.chess.store;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.PackedMove;
+
+import static com.edwardhicks.chess.PackedMove.NO_PIECE;
+import static com.edwardhicks.chess.bitboard.Bitboards.*;
+
+/**
+ * Layout of a game store file, all numbers big-endian:
+ *
+ *  file header  4 bytes magic "CHGS", 2 bytes version, 2 bytes reserved
+ *  each game    2 bytes ply count, 1 byte result, 1 byte flags,
+ *               if FLAG_FEN: 2 bytes length and the start position's FEN in ASCII,
+ *               then 2 bytes per move
+ *
+ * A move is stored as start square (bits 0-5), end square (bits 6-11) and promotion piece type
+ * (bits 12-14, 0 if none). Castling is the king's two square move.
+ */
+final class GameStoreFormat {
+
+    static final int MAGIC = 0x43484753;  // "CHGS"
+    static final short VERSION = 1;
+    static final int FILE_HEADER_BYTES = 8;
+    static final int GAME_HEADER_BYTES = 4;
+    static final int FLAG_FEN = 1;
+
+    static final String[] RESULTS = {"*", "1-0", "0-1", "1/2-1/2"};
+
+    private GameStoreFormat() {}
+
+    static short encodeMove(int move) {
+        int promotion = PackedMove.promotion(move);
+        int promotionType = promotion == NO_PIECE ? 0 : promotion % 6;  // KNIGHT..QUEEN are 1..4
+        return (short) (PackedMove.start(move) | PackedMove.end(move) << 6 | promotionType << 12);
+    }
+
+    /**
+     * The legal move a stored move stands for in the game's current position, NONE if there isn't
+     * one (the file doesn't match the position).
+     */
+    static int decodeMove(short stored, GameState gameState) {
+        return gameState.legalMove(stored & 0x3F, (stored >>> 6) & 0x3F, (stored >>> 12) & 0x7);
+    }
+
+    static int resultCode(String result) {
+        for (int i = 0; i < RESULTS.length; i++) {
+            if (RESULTS[i].equals(result)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
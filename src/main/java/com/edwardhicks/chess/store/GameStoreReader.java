@@ -0,0 +1,158 @@
+package com.edwardhicks.chess.store;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.PackedMove;
+
+import static com.edwardhicks.chess.store.GameStoreFormat.*;
+
+/**
+ * Reads a store file (see GameStoreFormat) through memory maps, so moves are read straight out of
+ * the page cache without copying. Opening the file walks the game headers once to index where
+ * each game starts.
+ *
+ * A single buffer can map at most 2GB, so big files are mapped in regions of up to
+ * MAX_REGION_BYTES, each starting at a game so no game straddles two regions.
+ */
+public class GameStoreReader implements AutoCloseable {
+
+    private static final long MAX_REGION_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+    private long[] games = new long[1024];  // region index << 32 | offset of the game in the region
+    private int gameCount;
+
+    public GameStoreReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        long size = channel.size();
+        if (size < FILE_HEADER_BYTES) {
+            throw new IOException("Not a game store, too short: " + file);
+        }
+
+        long regionStart = 0;
+        int position = FILE_HEADER_BYTES;
+        MappedByteBuffer region = map(regionStart, size);
+        if (region.getInt(0) != MAGIC || region.getShort(4) != VERSION) {
+            throw new IOException("Not a game store, or an unknown version: " + file);
+        }
+
+        while (regionStart + position < size) {
+            if (!fits(region, position)) {
+                if (regionStart + region.limit() == size) {
+                    throw new IOException("Game store ends part way through a game: " + file);
+                }
+                regionStart += position;  // Start a new region at this game
+                position = 0;
+                region = map(regionStart, size);
+                continue;
+            }
+            if (gameCount == games.length) {
+                games = Arrays.copyOf(games, gameCount * 2);
+            }
+            games[gameCount++] = (long) (regions.size() - 1) << 32 | position;
+            position += gameBytes(region, position);
+        }
+    }
+
+    public int gameCount() {
+        return gameCount;
+    }
+
+    public int plies(int game) {
+        return region(game).getShort(offset(game)) & 0xFFFF;
+    }
+
+    public String result(int game) {
+        return RESULTS[region(game).get(offset(game) + 2) & 0x3];
+    }
+
+    /**
+     * The game's starting position, or null if it starts from the initial position.
+     */
+    public String startFen(int game) {
+        MappedByteBuffer region = region(game);
+        int offset = offset(game);
+        if ((region.get(offset + 3) & FLAG_FEN) == 0) {
+            return null;
+        }
+        byte[] fen = new byte[region.getShort(offset + GAME_HEADER_BYTES) & 0xFFFF];
+        region.get(offset + GAME_HEADER_BYTES + 2, fen);
+        return new String(fen, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * The game replayed up to a ply, 0 being its starting position.
+     */
+    public GameState replay(int game, int ply) {
+        int plies = plies(game);
+        if (ply < 0 || ply > plies) {
+            throw new IllegalArgumentException("Game " + game + " has " + plies + " plies, asked for ply " + ply);
+        }
+        String fen = startFen(game);
+        GameState gameState = fen != null ? GameState.fromFen(fen) : new GameState();
+
+        MappedByteBuffer region = region(game);
+        int moves = movesOffset(region, offset(game));
+        for (int i = 0; i < ply; i++) {
+            int move = decodeMove(region.getShort(moves + 2 * i), gameState);
+            if (move == PackedMove.NONE) {
+                throw new IllegalStateException("Game " + game + " has an illegal move at ply " + i);
+            }
+            gameState.makeMove(move);
+        }
+        return gameState;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();  // The maps stay valid until they're garbage collected
+    }
+
+    private MappedByteBuffer map(long start, long fileSize) throws IOException {
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(fileSize - start, MAX_REGION_BYTES));
+        regions.add(region);
+        return region;
+    }
+
+    private MappedByteBuffer region(int game) {
+        return regions.get((int) (games[game] >>> 32));
+    }
+
+    private int offset(int game) {
+        return (int) games[game];
+    }
+
+    /**
+     * True if the whole game starting at offset lies inside the region.
+     */
+    private static boolean fits(MappedByteBuffer region, int offset) {
+        if (offset + GAME_HEADER_BYTES > region.limit()) {
+            return false;
+        }
+        if ((region.get(offset + 3) & FLAG_FEN) != 0 && offset + GAME_HEADER_BYTES + 2 > region.limit()) {
+            return false;
+        }
+        return offset + gameBytes(region, offset) <= region.limit();
+    }
+
+    private static int gameBytes(MappedByteBuffer region, int offset) {
+        return movesOffset(region, offset) - offset + 2 * (region.getShort(offset) & 0xFFFF);
+    }
+
+    private static int movesOffset(MappedByteBuffer region, int offset) {
+        if ((region.get(offset + 3) & FLAG_FEN) == 0) {
+            return offset + GAME_HEADER_BYTES;
+        }
+        return offset + GAME_HEADER_BYTES + 2 + (region.getShort(offset + GAME_HEADER_BYTES) & 0xFFFF);
+    }
+}
@@ -0,0 +1,46 @@
+package com.edwardhicks.chess.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.edwardhicks.chess.GameState;
+
+import static com.edwardhicks.chess.store.GameStoreFormat.*;
+
+/**
+ * Appends games to a store file (see GameStoreFormat), creating it if needed. Existing games are
+ * never rewritten. Appends are synchronized so import workers can share a writer.
+ */
+public class GameStoreWriter implements AutoCloseable {
+
+    private final FileChannel channel;
+
+    public GameStoreWriter(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).putShort(VERSION).putShort((short) 0).flip();
+            writeFully(header);
+        }
+    }
+
+    /**
+     * Appends the moves played in a game so far. result is "1-0", "0-1", "1/2-1/2" or "*" (anything else is stored as "*").
+     */
+    public synchronized void append(GameState game, String result) throws IOException {
+        writeFully(ByteBuffer.wrap(CompactGame.encode(game, result)));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+}
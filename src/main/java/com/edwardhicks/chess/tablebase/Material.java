@@ -0,0 +1,144 @@
+package com.edwardhicks.chess.tablebase;
+
+import java.util.Arrays;
+
+import static com.edwardhicks.chess.bitboard.Bitboards.*;
+
+/**
+ * The pieces a table covers, named like "KRvKN": white's pieces, "v", black's pieces. Within a
+ * side the king comes first and the rest follow strongest first. A table is only kept for the
+ * stronger side as white, a position with the colors the other way round is looked up with the
+ * board mirrored top to bottom.
+ *
+ * A position is indexed by side to move, then the square of each piece in this order, six bits
+ * each: index = (stm * 64 + square0) * 64 + square1 ...
+ */
+final class Material {
+
+    static final int MAX_PIECES = 4;
+    private static final String LETTERS = "PNBRQK";  // indexed by piece type
+
+    final String name;
+    final int[] types;
+    final int[] colors;
+    final int pieceCount;
+    final int positions;
+
+    private Material(String name, int[] types, int[] colors) {
+        this.name = name;
+        this.types = types;
+        this.colors = colors;
+        this.pieceCount = types.length;
+        this.positions = 2 << (6 * pieceCount);
+    }
+
+    /**
+     * The table for a name like "KQvK". Throws IllegalArgumentException if it isn't one this
+     * generator supports: a king each, at most MAX_PIECES pieces and pawns on one side only.
+     */
+    static Material parse(String name) {
+        String[] sides = name.split("v");
+        if (sides.length != 2) {
+            throw new IllegalArgumentException("Table names look like KQvK: " + name);
+        }
+        int[] whiteTypes = sideTypes(sides[0], name);
+        int[] blackTypes = sideTypes(sides[1], name);
+        if (whiteTypes.length + blackTypes.length > MAX_PIECES) {
+            throw new IllegalArgumentException("Tables have at most " + MAX_PIECES + " pieces: " + name);
+        }
+        if (count(whiteTypes, PAWN) > 0 && count(blackTypes, PAWN) > 0) {
+            throw new IllegalArgumentException("Pawns on both sides aren't supported: " + name);
+        }
+        return canonical(whiteTypes, blackTypes, new boolean[1]);
+    }
+
+    /**
+     * The table holding positions with these pieces. Sets flipped[0] when the colors have to be swapped to look them up.
+     */
+    static Material canonical(int[] whiteTypes, int[] blackTypes, boolean[] flipped) {
+        boolean flip = compareSides(whiteTypes, blackTypes) < 0;
+        flipped[0] = flip;
+        return flip ? canonical(blackTypes, whiteTypes) : canonical(whiteTypes, blackTypes);
+    }
+
+    boolean hasPawns() {
+        return count(types, PAWN) > 0;
+    }
+
+    int index(int stm, int[] squares) {
+        int index = stm;
+        for (int i = 0; i < pieceCount; i++) {
+            index = index << 6 | squares[i];
+        }
+        return index;
+    }
+
+    /**
+     * Inverse of index, returns the side to move and fills in the squares.
+     */
+    int decode(int index, int[] squares) {
+        for (int i = pieceCount - 1; i >= 0; i--) {
+            squares[i] = index & 63;
+            index >>>= 6;
+        }
+        return index;
+    }
+
+    private static Material canonical(int[] whiteTypes, int[] blackTypes) {
+        int[] white = sorted(whiteTypes);
+        int[] black = sorted(blackTypes);
+        int[] types = new int[white.length + black.length];
+        int[] colors = new int[types.length];
+        System.arraycopy(white, 0, types, 0, white.length);
+        System.arraycopy(black, 0, types, white.length, black.length);
+        Arrays.fill(colors, white.length, colors.length, BLACK);
+        return new Material(letters(white) + "v" + letters(black), types, colors);
+    }
+
+    private static int[] sideTypes(String side, String name) {
+        if (side.isEmpty() || side.charAt(0) != 'K' || side.indexOf('K', 1) >= 0) {
+            throw new IllegalArgumentException("Each side needs exactly one king, written first: " + name);
+        }
+        int[] types = new int[side.length()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = LETTERS.indexOf(side.charAt(i));
+            if (types[i] < 0) {
+                throw new IllegalArgumentException("Unknown piece " + side.charAt(i) + " in " + name);
+            }
+        }
+        return types;
+    }
+
+    // King first, then strongest first
+    private static int[] sorted(int[] types) {
+        return Arrays.stream(types).boxed().sorted((a, b) -> b - a).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static String letters(int[] types) {
+        StringBuilder letters = new StringBuilder();
+        for (int type : types) {
+            letters.append(LETTERS.charAt(type));
+        }
+        return letters.toString();
+    }
+
+    // More pieces first, then stronger pieces
+    private static int compareSides(int[] a, int[] b) {
+        if (a.length != b.length) {
+            return a.length - b.length;
+        }
+        int[] sortedA = sorted(a);
+        int[] sortedB = sorted(b);
+        return Arrays.compare(sortedA, sortedB);
+    }
+
+    private static int count(int[] types, int type) {
+        int count = 0;
+        for (int t : types) {
+            if (t == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,509 @@
+package com.edwardhicks.chess.tablebase;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.edwardhicks.chess.bitboard.Magics;
+
+import static com.edwardhicks.chess.bitboard.Bitboards.*;
+import static com.edwardhicks.chess.tablebase.Tablebases.*;
+
+/**
+ * Builds endgame tables by retrograde analysis. Every position of a table is first given its
+ * moves' worth: mates and stalemates are final, moves that capture or promote lead into smaller
+ * tables (generated first) whose values are known. Then, level by level in plies to mate:
+ *
+ *  - a position one move before a lost position is won,
+ *  - a position all of whose moves lead to won positions is lost, in one more ply than its longest
+ *    such move.
+ *
+ * Walking back from resolved positions uses un-moves, so each level only touches the positions
+ * next to the previous level's. Anything never resolved is a draw. Each level is split over a
+ * thread pool, and the working arrays are direct buffers so a 4-piece table (2 * 64^4 positions)
+ * doesn't sit on the heap.
+ *
+ * Usage: TablebaseGenerator directory name... [threads], e.g. TablebaseGenerator tb KQvK KRvK KPvK KBNvK
+ */
+public class TablebaseGenerator {
+
+    private static final int UNRESOLVED = 0xFE;
+    private static final int NOT_SCHEDULED = 0xFF;
+    private static final int NO_LOSING_EXIT = 0xFE;  // loss byte when no capture or promotion loses
+    private static final int CAN_AVOID_LOSS = 0xFF;  // loss byte when a capture or promotion draws or wins
+    private static final int CHUNK = 1 << 16;
+    private static final VarHandle COUNTERS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final Path directory;
+    private final int threads;
+
+    public TablebaseGenerator(Path directory, int threads) {
+        this.directory = directory;
+        this.threads = threads;
+    }
+
+    static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TablebaseGenerator directory name... [threads]");
+            System.exit(2);
+        }
+        List<String> names = new ArrayList<>(List.of(args).subList(1, args.length));
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (names.getLast().chars().allMatch(Character::isDigit)) {
+            threads = Integer.parseInt(names.removeLast());
+        }
+        Files.createDirectories(Path.of(args[0]));
+        TablebaseGenerator generator = new TablebaseGenerator(Path.of(args[0]), threads);
+        for (String name : names) {
+            generator.generate(name);
+        }
+    }
+
+    /**
+     * Writes the table, and any smaller table it leads into, unless the file is already there.
+     */
+    public void generate(String name) throws IOException {
+        Material material = Material.parse(name);
+        Path file = Tablebases.file(directory, material.name);
+        if (Files.exists(file)) {
+            return;
+        }
+        for (String child : children(material)) {
+            generate(child);
+        }
+
+        long startTime = System.currentTimeMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "tablebase-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Build build = new Build(material, new Tablebases(directory));
+            int levels = build.run(pool);
+            write(file, build.values);
+            System.out.printf("%s: %,d positions, longest mate %d plies, %,d ms%n",
+                              material.name, material.positions, levels, System.currentTimeMillis() - startTime);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Tables reached by one capture or promotion.
+     */
+    private static Set<String> children(Material material) {
+        Set<String> children = new LinkedHashSet<>();
+        for (int i = 0; i < material.pieceCount; i++) {
+            if (material.types[i] != KING) {
+                children.add(without(material, i, -1));  // i captured
+            }
+            if (material.types[i] == PAWN) {
+                for (int type = KNIGHT; type <= QUEEN; type++) {
+                    children.add(without(material, i, type));  // i promoted
+                }
+            }
+        }
+        children.remove("KvK");
+        return children;
+    }
+
+    private static String without(Material material, int piece, int replacement) {
+        List<Integer> white = new ArrayList<>();
+        List<Integer> black = new ArrayList<>();
+        for (int i = 0; i < material.pieceCount; i++) {
+            int type = i == piece ? replacement : material.types[i];
+            if (type >= 0) {
+                (material.colors[i] == WHITE ? white : black).add(type);
+            }
+        }
+        Material child = Material.canonical(white.stream().mapToInt(Integer::intValue).toArray(),
+                                            black.stream().mapToInt(Integer::intValue).toArray(), new boolean[1]);
+        return child.name;
+    }
+
+    private void write(Path file, ByteBuffer values) throws IOException {
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                                    StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putShort(VERSION).putShort((short) 0).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            ByteBuffer body = values.duplicate().clear();
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+        }
+        Files.move(partial, file);  // So a half written table is never picked up
+    }
+
+    /**
+     * Working state for one table.
+     */
+    private static final class Build {
+
+        private final Material material;
+        private final Tablebases children;
+        private final int n;
+        final ByteBuffer values;  // final value, UNRESOLVED or INVALID
+        private final ByteBuffer counters;  // per position: moves within the table not yet known to lose
+        private final ByteBuffer scheduled;  // level a capture or promotion wins at, or a known loss lands at
+        private final ByteBuffer losses;  // longest loss through a capture or promotion, or NO_LOSING_EXIT / CAN_AVOID_LOSS
+        private final AtomicInteger lastScheduled = new AtomicInteger();
+
+        Build(Material material, Tablebases children) {
+            this.material = material;
+            this.children = children;
+            this.n = material.pieceCount;
+            this.values = ByteBuffer.allocateDirect(material.positions);
+            this.counters = ByteBuffer.allocateDirect(4 * material.positions).order(ByteOrder.nativeOrder());
+            this.scheduled = ByteBuffer.allocateDirect(material.positions);
+            this.losses = ByteBuffer.allocateDirect(material.positions);
+        }
+
+        /**
+         * Resolves every position, returns the longest mate in plies.
+         */
+        int run(ExecutorService pool) {
+            parallel(pool, this::initialize);
+
+            int level = 0;
+            while (true) {
+                level++;
+                if (level > MAX_PLIES) {
+                    throw new IllegalStateException(material.name + " has mates longer than " + MAX_PLIES + " plies");
+                }
+                int current = level;
+                LongAdder resolved = new LongAdder();
+                parallel(pool, (from, to) -> resolveLevel(current, from, to, resolved));
+                if (resolved.sum() == 0 && level > lastScheduled.get()) {
+                    break;
+                }
+            }
+
+            parallel(pool, (from, to) -> {
+                for (int index = from; index < to; index++) {
+                    if ((values.get(index) & 0xFF) == UNRESOLVED) {
+                        values.put(index, (byte) DRAW);
+                    }
+                }
+            });
+            return level - 1;
+        }
+
+        /**
+         * Works out the moves of every position in [from, to).
+         */
+        private void initialize(int from, int to) {
+            int[] squares = new int[n];
+            int[] childTypes = new int[n];
+            int[] childColors = new int[n];
+            int[] childSquares = new int[n];
+
+            for (int index = from; index < to; index++) {
+                values.put(index, (byte) UNRESOLVED);
+                scheduled.put(index, (byte) NOT_SCHEDULED);
+                COUNTERS.set(counters, 4 * index, 0);
+
+                int stm = material.decode(index, squares);
+                if (!isValid(stm, squares)) {
+                    values.put(index, (byte) INVALID);
+                    continue;
+                }
+
+                long occupied = occupancy(squares);
+                int legalMoves = 0;
+                int inTable = 0;
+                int bestWin = Integer.MAX_VALUE;
+                int longestLoss = -1;
+                boolean drawExit = false;
+
+                for (int piece = 0; piece < n; piece++) {
+                    if (material.colors[piece] != stm) {
+                        continue;
+                    }
+                    int start = squares[piece];
+                    long targets = moveTargets(piece, start, stm, squares, occupied);
+                    while (targets != 0) {
+                        int end = Long.numberOfTrailingZeros(targets);
+                        targets &= targets - 1;
+                        int captured = pieceOn(end, squares);
+                        squares[piece] = end;
+                        boolean legal = !isAttacked(kingSquare(stm, squares), 1 - stm, squares, captured,
+                                                    (occupied & ~(1L << start)) | 1L << end);
+                        squares[piece] = start;
+                        if (!legal) {
+                            continue;
+                        }
+                        legalMoves++;
+
+                        boolean promotes = material.types[piece] == PAWN && (end >>> 3 == 0 || end >>> 3 == 7);
+                        if (!promotes && captured < 0) {
+                            inTable++;
+                            continue;
+                        }
+                        for (int promotion = promotes ? QUEEN : -1; promotion >= (promotes ? KNIGHT : -1); promotion--) {
+                            int count = 0;
+                            for (int i = 0; i < n; i++) {
+                                if (i != captured) {
+                                    childTypes[count] = i == piece && promotes ? promotion : material.types[i];
+                                    childColors[count] = material.colors[i];
+                                    childSquares[count++] = i == piece ? end : squares[i];
+                                }
+                            }
+                            int child = children.value(childTypes, childColors, childSquares, count, 1 - stm);
+                            if (child < 0 || child == INVALID) {
+                                throw new IllegalStateException("No value for a position reached from " + material.name);
+                            }
+                            if (child == DRAW) {
+                                drawExit = true;
+                            } else if (child % 2 == 0) {  // Opponent loses
+                                bestWin = Math.min(bestWin, child + 1);
+                            } else {
+                                longestLoss = Math.max(longestLoss, child + 1);
+                            }
+                        }
+                    }
+                }
+
+                if (legalMoves == 0) {
+                    values.put(index, (byte) (isAttacked(kingSquare(stm, squares), 1 - stm, squares, -1, occupied) ? 0 : DRAW));
+                    continue;
+                }
+                COUNTERS.set(counters, 4 * index, inTable);
+                if (bestWin != Integer.MAX_VALUE) {
+                    schedule(index, bestWin);
+                }
+                losses.put(index, (byte) (drawExit || bestWin != Integer.MAX_VALUE ? CAN_AVOID_LOSS
+                                          : longestLoss < 0 ? NO_LOSING_EXIT : longestLoss));
+                if (inTable == 0 && longestLoss >= 0 && !drawExit && bestWin == Integer.MAX_VALUE) {
+                    schedule(index, longestLoss);  // Every move captures or promotes and loses
+                }
+            }
+        }
+
+        /**
+         * Resolves the positions in [from, to) that land at this level, and walks back from the
+         * ones the previous level resolved.
+         */
+        private void resolveLevel(int level, int from, int to, LongAdder resolved) {
+            int[] squares = new int[n];
+            for (int index = from; index < to; index++) {
+                int value = values.get(index) & 0xFF;
+                if (value == UNRESOLVED && (scheduled.get(index) & 0xFF) == level) {
+                    values.put(index, (byte) level);
+                    resolved.increment();
+                } else if (value == level - 1) {
+                    int stm = material.decode(index, squares);
+                    unmoves(stm, squares, level, resolved);
+                }
+            }
+        }
+
+        /**
+         * Visits every position one move before the given one, which has just been resolved at level - 1.
+         */
+        private void unmoves(int stm, int[] squares, int level, LongAdder resolved) {
+            int mover = 1 - stm;
+            long occupied = occupancy(squares);
+            for (int piece = 0; piece < n; piece++) {
+                if (material.colors[piece] != mover) {
+                    continue;
+                }
+                int end = squares[piece];
+                long starts;
+                if (material.types[piece] == PAWN) {
+                    starts = pawnUnmoveStarts(end, mover, occupied);
+                } else {
+                    starts = attacks(material.types[piece], end, mover, occupied) & ~occupied;
+                }
+                while (starts != 0) {
+                    squares[piece] = Long.numberOfTrailingZeros(starts);
+                    starts &= starts - 1;
+                    int previous = material.index(mover, squares);
+                    if ((values.get(previous) & 0xFF) != UNRESOLVED) {
+                        continue;
+                    }
+                    if (level % 2 == 1) {  // We just lost, so the previous position is won
+                        values.put(previous, (byte) level);
+                        resolved.increment();
+                    } else {
+                        moveLoses(previous, level, resolved);
+                    }
+                }
+                squares[piece] = end;
+            }
+        }
+
+        /**
+         * One more move of the position has been found to lose at this level.
+         */
+        private void moveLoses(int index, int level, LongAdder resolved) {
+            int exitLoss = losses.get(index) & 0xFF;
+            if (exitLoss == CAN_AVOID_LOSS) {
+                return;
+            }
+            if ((int) COUNTERS.getAndAdd(counters, 4 * index, -1) != 1) {
+                return;
+            }
+            // That was the last one, the position is lost once the longest of its lines runs out
+            int lossLevel = exitLoss == NO_LOSING_EXIT ? level : Math.max(level, exitLoss);
+            if (lossLevel == level) {
+                values.put(index, (byte) level);
+                resolved.increment();
+            } else {
+                schedule(index, lossLevel);
+            }
+        }
+
+        private void schedule(int index, int level) {
+            scheduled.put(index, (byte) level);
+            lastScheduled.accumulateAndGet(level, Math::max);
+        }
+
+        private boolean isValid(int stm, int[] squares) {
+            long occupied = 0L;
+            for (int i = 0; i < n; i++) {
+                long bit = 1L << squares[i];
+                if ((occupied & bit) != 0) {
+                    return false;
+                }
+                occupied |= bit;
+                int row = squares[i] >>> 3;
+                if (material.types[i] == PAWN && (row == 0 || row == 7)) {
+                    return false;
+                }
+            }
+            // The side that just moved can't be in check
+            return !isAttacked(kingSquare(1 - stm, squares), stm, squares, -1, occupied);
+        }
+
+        private long moveTargets(int piece, int start, int stm, int[] squares, long occupied) {
+            long own = 0L;
+            long enemy = 0L;
+            for (int i = 0; i < n; i++) {
+                if (material.colors[i] == stm) {
+                    own |= 1L << squares[i];
+                } else {
+                    enemy |= 1L << squares[i];
+                }
+            }
+            if (material.types[piece] != PAWN) {
+                return attacks(material.types[piece], start, stm, occupied) & ~own;
+            }
+            int forward = stm == WHITE ? -8 : 8;
+            long targets = PAWN_ATTACKS[stm][start] & enemy;
+            long oneStep = 1L << (start + forward);
+            if ((occupied & oneStep) == 0) {
+                targets |= oneStep;
+                int startRow = stm == WHITE ? 6 : 1;
+                if (start >>> 3 == startRow && (occupied & (1L << (start + 2 * forward))) == 0) {
+                    targets |= 1L << (start + 2 * forward);
+                }
+            }
+            return targets;
+        }
+
+        private static long pawnUnmoveStarts(int end, int mover, long occupied) {
+            int back = mover == WHITE ? 8 : -8;
+            int start = end + back;
+            int row = start >>> 3;
+            if (start < 0 || start > 63 || row == 0 || row == 7 || (occupied & (1L << start)) != 0) {
+                return 0L;
+            }
+            long starts = 1L << start;
+            int doublePushRow = mover == WHITE ? 4 : 3;
+            if (end >>> 3 == doublePushRow && (occupied & (1L << (start + back))) == 0) {
+                starts |= 1L << (start + back);
+            }
+            return starts;
+        }
+
+        private static long attacks(int type, int sq, int color, long occupied) {
+            return switch (type) {
+                case PAWN -> PAWN_ATTACKS[color][sq];
+                case KNIGHT -> KNIGHT_ATTACKS[sq];
+                case BISHOP -> Magics.bishopAttacks(sq, occupied);
+                case ROOK -> Magics.rookAttacks(sq, occupied);
+                case QUEEN -> Magics.queenAttacks(sq, occupied);
+                default -> KING_ATTACKS[sq];
+            };
+        }
+
+        private boolean isAttacked(int sq, int byColor, int[] squares, int skip, long occupied) {
+            for (int i = 0; i < n; i++) {
+                if (i != skip && material.colors[i] == byColor
+                    && (attacks(material.types[i], squares[i], byColor, occupied) & (1L << sq)) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int kingSquare(int color, int[] squares) {
+            for (int i = 0; i < n; i++) {
+                if (material.types[i] == KING && material.colors[i] == color) {
+                    return squares[i];
+                }
+            }
+            throw new IllegalStateException("No king in " + material.name);
+        }
+
+        private long occupancy(int[] squares) {
+            long occupied = 0L;
+            for (int i = 0; i < n; i++) {
+                occupied |= 1L << squares[i];
+            }
+            return occupied;
+        }
+
+        private int pieceOn(int sq, int[] squares) {
+            for (int i = 0; i < n; i++) {
+                if (squares[i] == sq) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void parallel(ExecutorService pool, RangeTask task) {
+            List<Future<?>> chunks = new ArrayList<>();
+            for (int from = 0; from < material.positions; from += CHUNK) {
+                int start = from;
+                int end = Math.min(material.positions, from + CHUNK);
+                chunks.add(pool.submit(() -> task.run(start, end)));
+            }
+            try {
+                for (Future<?> chunk : chunks) {
+                    chunk.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while generating " + material.name, e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Generating " + material.name + " failed", e.getCause());
+            }
+        }
+    }
+
+    private interface RangeTask {
+        void run(int from, int to);
+    }
+}
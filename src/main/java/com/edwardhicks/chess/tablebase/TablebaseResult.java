@@ -0,0 +1,23 @@
+package com.edwardhicks.chess.tablebase;
+
+/**
+ * Perfect play result for the side to move, with the distance to mate in plies for a win or loss.
+ */
+public record TablebaseResult(int outcome, int pliesToMate) {
+
+    public static final int LOSS = -1;
+    public static final int DRAW = 0;
+    public static final int WIN = 1;
+
+    public static final TablebaseResult DRAWN = new TablebaseResult(DRAW, 0);
+
+    /**
+     * From a stored table value: 0 to MAX_PLIES plies to mate, odd if the side to move wins.
+     */
+    static TablebaseResult fromValue(int value) {
+        if (value > Tablebases.MAX_PLIES) {
+            return DRAWN;
+        }
+        return new TablebaseResult(value % 2 == 1 ? WIN : LOSS, value);
+    }
+}
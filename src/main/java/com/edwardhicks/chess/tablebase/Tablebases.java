@@ -0,0 +1,144 @@
+package com.edwardhicks.chess.tablebase;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.edwardhicks.chess.GameState;
+
+import static com.edwardhicks.chess.bitboard.Bitboards.*;
+
+/**
+ * Probes endgame tables written by TablebaseGenerator. Tables are memory mapped the first time a
+ * position needs them and stay mapped, so probing is a few array reads. Safe to share between
+ * search threads.
+ *
+ * File layout: 4 bytes magic "CHTB", 2 bytes version, 2 bytes piece count, then one byte per
+ * position in Material index order. A byte holds the plies to mate, odd when the side to move
+ * wins and even when it loses, or DRAW or INVALID.
+ */
+public class Tablebases {
+
+    static final int MAGIC = 0x43485442;  // "CHTB"
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int MAX_PLIES = 252;
+    static final int DRAW = 0xFD;
+    static final int INVALID = 0xFF;
+
+    private final Path directory;
+    private final Map<String, Optional<ByteBuffer>> tables = new ConcurrentHashMap<>();
+
+    public Tablebases(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Perfect play result for the position, or null if no table covers it: too many pieces, castle
+     * rights left, an en passant capture available, or the table hasn't been generated.
+     */
+    public TablebaseResult probe(GameState gameState) {
+        int stm = gameState.whiteToMove ? WHITE : BLACK;
+        int enPassant = gameState.getEnPassantSquare();
+        if (gameState.getCastleRights() != 0
+            || (enPassant >= 0 && (PAWN_ATTACKS[1 - stm][enPassant] & gameState.getPieceBitboard(stm * 6 + PAWN)) != 0)) {
+            return null;
+        }
+        int[] types = new int[Material.MAX_PIECES];
+        int[] colors = new int[Material.MAX_PIECES];
+        int[] squares = new int[Material.MAX_PIECES];
+        int count = 0;
+        for (int piece = 0; piece < 12; piece++) {
+            long pieces = gameState.getPieceBitboard(piece);
+            while (pieces != 0) {
+                if (count == Material.MAX_PIECES) {
+                    return null;
+                }
+                types[count] = piece % 6;
+                colors[count] = piece / 6;
+                squares[count++] = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+            }
+        }
+        int value = value(types, colors, squares, count, stm);
+        return value == INVALID || value < 0 ? null : TablebaseResult.fromValue(value);
+    }
+
+    /**
+     * Stored value for a position given as a list of pieces, -1 if its table isn't available.
+     * Bare kings are a draw without a table.
+     */
+    int value(int[] types, int[] colors, int[] squares, int count, int stm) {
+        if (count == 2) {
+            return DRAW;
+        }
+        int whiteCount = 0;
+        for (int i = 0; i < count; i++) {
+            whiteCount += colors[i] == WHITE ? 1 : 0;
+        }
+        int[] whiteTypes = new int[whiteCount];
+        int[] blackTypes = new int[count - whiteCount];
+        for (int i = 0, w = 0, b = 0; i < count; i++) {
+            if (colors[i] == WHITE) {
+                whiteTypes[w++] = types[i];
+            } else {
+                blackTypes[b++] = types[i];
+            }
+        }
+        boolean[] flipped = new boolean[1];
+        Material material = Material.canonical(whiteTypes, blackTypes, flipped);
+        ByteBuffer table = table(material.name);
+        if (table == null) {
+            return -1;
+        }
+
+        // Place each piece in its slot of the table's order, mirroring the board if the colors are swapped
+        int[] slots = new int[material.pieceCount];
+        long used = 0;
+        for (int slot = 0; slot < material.pieceCount; slot++) {
+            for (int i = 0; i < count; i++) {
+                int color = flipped[0] ? 1 - colors[i] : colors[i];
+                if ((used & (1L << i)) == 0 && types[i] == material.types[slot] && color == material.colors[slot]) {
+                    used |= 1L << i;
+                    slots[slot] = flipped[0] ? squares[i] ^ 56 : squares[i];
+                    break;
+                }
+            }
+        }
+        int index = material.index(flipped[0] ? 1 - stm : stm, slots);
+        return table.get(HEADER_BYTES + index) & 0xFF;
+    }
+
+    static Path file(Path directory, String name) {
+        return directory.resolve(name + ".tb");
+    }
+
+    private ByteBuffer table(String name) {
+        return tables.computeIfAbsent(name, this::open).orElse(null);
+    }
+
+    private Optional<ByteBuffer> open(String name) {
+        Path file = file(directory, name);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (table.getInt(0) != MAGIC || table.getShort(4) != VERSION
+                || channel.size() != HEADER_BYTES + Material.parse(name).positions) {
+                throw new IOException("Not a tablebase file for " + name + ": " + file);
+            }
+            return Optional.of(table);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.edwardhicks.chess.trace;
+
+/**
+ * Receives events from a GameState as the game is played. Every method has an empty default, so
+ * a listener only overrides what it cares about, and a game without a listener uses NONE, whose
+ * calls the JIT inlines away to nothing.
+ *
+ * Events are raised on the thread playing the game and should return quickly, hand anything slow
+ * (printing, writing files) to another thread, as RingBufferTraceSink does.
+ */
+public interface GameListener {
+
+    GameListener NONE = new GameListener() {};
+
+    /**
+     * A move was made, ply is the number of moves played including this one.
+     */
+    default void moveMade(int move, int ply) {}
+
+    /**
+     * The last move was taken back, ply is the number of moves left.
+     */
+    default void moveUndone(int move, int ply) {}
+
+    /**
+     * A double pawn push left a square that can be captured onto en passant.
+     */
+    default void enPassantAvailable(int square) {}
+
+    /**
+     * The side to move has no legal moves.
+     */
+    default void gameOver(boolean checkmate, boolean whiteToMove) {}
+}
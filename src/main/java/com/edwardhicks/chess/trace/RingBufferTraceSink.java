@@ -0,0 +1,133 @@
+package com.edwardhicks.chess.trace;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.edwardhicks.chess.PackedMove;
+import com.edwardhicks.chess.Square;
+
+/**
+ * Listener that packs each event into a long in a fixed size ring and leaves the formatting and
+ * printing to a background thread, so the game thread never waits on the output stream.
+ *
+ * There must be one producer: attach a sink to a single game. When the ring is full new events
+ * are dropped and counted rather than blocking the game.
+ */
+public class RingBufferTraceSink implements GameListener, AutoCloseable {
+
+    private static final int MOVE_MADE = 1;
+    private static final int MOVE_UNDONE = 2;
+    private static final int EN_PASSANT = 3;
+    private static final int CHECKMATE = 4;
+    private static final int STALEMATE = 5;
+
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    private final long[] ring;
+    private final int mask;
+    private final AtomicLong published = new AtomicLong();  // events written by the game thread
+    private final AtomicLong consumed = new AtomicLong();  // events printed by the drain thread
+    private final AtomicLong dropped = new AtomicLong();
+    private final PrintStream out;
+    private final Thread drainThread;
+    private volatile boolean closed;
+
+    /**
+     * @param capacity ring size, rounded up to a power of two
+     */
+    public RingBufferTraceSink(int capacity, PrintStream out) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+        this.ring = new long[size];
+        this.mask = size - 1;
+        this.out = out;
+        this.drainThread = new Thread(this::drain, "trace-sink");
+        this.drainThread.setDaemon(true);
+        this.drainThread.start();
+    }
+
+    @Override
+    public void moveMade(int move, int ply) {
+        publish(MOVE_MADE, ply, move);
+    }
+
+    @Override
+    public void moveUndone(int move, int ply) {
+        publish(MOVE_UNDONE, ply, move);
+    }
+
+    @Override
+    public void enPassantAvailable(int square) {
+        publish(EN_PASSANT, 0, square);
+    }
+
+    @Override
+    public void gameOver(boolean checkmate, boolean whiteToMove) {
+        publish(checkmate ? CHECKMATE : STALEMATE, 0, whiteToMove ? 1 : 0);
+    }
+
+    /**
+     * Events lost because the ring was full.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Prints whatever is still in the ring, then stops the drain thread.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(drainThread);
+        try {
+            drainThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.flush();
+    }
+
+    // Event layout: type in the top byte, ply in the next 16 bits, the move or square in the low 32
+    private void publish(int type, int ply, int payload) {
+        long head = published.get();
+        if (head - consumed.get() >= ring.length) {
+            dropped.incrementAndGet();
+            return;
+        }
+        ring[(int) head & mask] = (long) type << 56 | (long) (ply & 0xFFFF) << 32 | (payload & 0xFFFFFFFFL);
+        published.lazySet(head + 1);  // ordered after the slot write, the drain thread reads the slot after seeing it
+    }
+
+    private void drain() {
+        while (true) {
+            long tail = consumed.get();
+            long head = published.get();
+            if (tail == head) {
+                if (closed) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            for (; tail < head; tail++) {
+                out.println(format(ring[(int) tail & mask]));
+            }
+            consumed.lazySet(tail);
+        }
+    }
+
+    private static String format(long event) {
+        int type = (int) (event >>> 56);
+        int ply = (int) (event >>> 32) & 0xFFFF;
+        int payload = (int) event;
+        return switch (type) {
+            case MOVE_MADE -> "Move " + ply + ": " + PackedMove.toMove(payload).toLongAlgebraic();
+            case MOVE_UNDONE -> "Undone " + (ply + 1) + ": " + PackedMove.toMove(payload).toLongAlgebraic();
+            case EN_PASSANT -> "En passant possible on " + new Square(payload & 7, payload >>> 3).toAlgebraic();
+            case CHECKMATE -> (payload == 1 ? "Black" : "White") + " wins by checkmate";
+            case STALEMATE -> "Stalemate";
+            default -> "Unknown event " + Long.toHexString(event);
+        };
+    }
+}
@@ -0,0 +1,323 @@
+package com.edwardhicks.chess.uci;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.Move;
+import com.edwardhicks.chess.MoveList;
+import com.edwardhicks.chess.PackedMove;
+import com.edwardhicks.chess.metrics.EngineMetrics;
+import com.edwardhicks.chess.search.ParallelSearch;
+import com.edwardhicks.chess.search.Search;
+import com.edwardhicks.chess.search.SearchLimits;
+import com.edwardhicks.chess.search.SearchResult;
+import com.edwardhicks.chess.search.TranspositionTable;
+
+/**
+ * Headless engine speaking the UCI protocol over a pair of streams, so it can be driven by chess
+ * GUIs, tournament managers and batch jobs on machines without a display.
+ *
+ * Commands are read on the calling thread and each search runs on a background thread, so stop and
+ * isready are answered while the engine is thinking. Every completed iteration is reported as an
+ * info line with depth, score, nodes, nps and the principal variation.
+ *
+ * Usage: UciEngine, or ChessMain uci. Search metrics are published over JMX, see EngineMetrics.
+ */
+public class UciEngine {
+
+    private static final String NAME = "Java Chess Engine";
+    private static final String AUTHOR = "Edward Hicks";
+
+    private static final int DEFAULT_HASH_MB = 16;
+    private static final int MAX_HASH_MB = 4096;
+    private static final int MAX_THREADS = 256;
+
+    private static final int DEFAULT_MOVES_TO_GO = 30;  // moves left to plan for when the GUI doesn't say
+    private static final long MOVE_OVERHEAD_MILLIS = 50;  // kept back from the clock for communication lag
+
+    private final BufferedReader input;
+    private final PrintStream output;
+    private final ExecutorService searchThread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "uci-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private int hashMegabytes = DEFAULT_HASH_MB;
+    private int threads = 1;
+    private TranspositionTable transpositionTable = new TranspositionTable(DEFAULT_HASH_MB);
+    private ParallelSearch search = new ParallelSearch(1, transpositionTable);
+    private GameState gameState = new GameState();
+
+    private Future<?> runningSearch;
+    private AtomicBoolean searchStop = new AtomicBoolean();
+    private CountDownLatch stopReceived = new CountDownLatch(0);  // go infinite holds its bestmove until stop
+
+    public UciEngine(InputStream in, OutputStream out) {
+        this.input = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+        this.output = new PrintStream(out, true, StandardCharsets.US_ASCII);
+    }
+
+    static void main(String[] args) throws IOException {
+        EngineMetrics.publish();
+        new UciEngine(System.in, System.out).run();
+    }
+
+    /**
+     * Handles commands until quit or the end of the input.
+     */
+    public void run() throws IOException {
+        try {
+            String line;
+            while ((line = input.readLine()) != null) {
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens[0].equals("quit")) {
+                    break;
+                }
+                try {
+                    handle(tokens);
+                } catch (IllegalArgumentException e) {
+                    send("info string " + e.getMessage());  // UCI has no error reply, GUIs log info strings
+                } catch (RuntimeException e) {  // a bug, but the game can go on
+                    send("info string error: " + e);
+                }
+            }
+        } finally {
+            stopSearch();
+            search.close();
+            searchThread.shutdownNow();
+        }
+    }
+
+    private void handle(String[] tokens) {
+        switch (tokens[0]) {
+            case "uci" -> {
+                send("id name " + NAME);
+                send("id author " + AUTHOR);
+                send("option name Hash type spin default " + DEFAULT_HASH_MB + " min 1 max " + MAX_HASH_MB);
+                send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+                send("uciok");
+            }
+            case "isready" -> send("readyok");
+            case "ucinewgame" -> {
+                stopSearch();
+                transpositionTable.clear();
+                gameState = new GameState();
+            }
+            case "setoption" -> {
+                stopSearch();
+                setOption(tokens);
+            }
+            case "position" -> {
+                stopSearch();
+                gameState = position(tokens);
+            }
+            case "go" -> {
+                stopSearch();
+                go(tokens);
+            }
+            case "stop" -> stopSearch();
+            case "" -> {}
+            default -> throw new IllegalArgumentException("Unknown command: " + tokens[0]);
+        }
+    }
+
+    private void setOption(String[] tokens) {
+        // setoption name <name> value <value>, where only the value is a single token for our options
+        int valueIndex = Arrays.asList(tokens).indexOf("value");
+        if (tokens.length < 3 || !tokens[1].equals("name") || valueIndex < 0 || valueIndex != tokens.length - 2) {
+            throw new IllegalArgumentException("Expected setoption name <name> value <value>");
+        }
+        String name = String.join(" ", Arrays.copyOfRange(tokens, 2, valueIndex));
+        int value = parseInt(tokens[valueIndex + 1]);
+
+        if (name.equalsIgnoreCase("Hash")) {
+            hashMegabytes = clamp(value, 1, MAX_HASH_MB);
+        } else if (name.equalsIgnoreCase("Threads")) {
+            threads = clamp(value, 1, MAX_THREADS);
+        } else {
+            throw new IllegalArgumentException("Unknown option: " + name);
+        }
+
+        search.close();
+        transpositionTable = new TranspositionTable(hashMegabytes);
+        search = new ParallelSearch(threads, transpositionTable);
+    }
+
+    /**
+     * position startpos [moves ...] or position fen <fen> [moves ...]
+     */
+    private static GameState position(String[] tokens) {
+        int movesIndex = Arrays.asList(tokens).indexOf("moves");
+        int end = movesIndex < 0 ? tokens.length : movesIndex;
+
+        GameState position;
+        if (tokens.length > 1 && tokens[1].equals("startpos")) {
+            position = new GameState();
+        } else if (tokens.length > 2 && tokens[1].equals("fen")) {
+            position = GameState.fromFen(String.join(" ", Arrays.copyOfRange(tokens, 2, end)));
+        } else {
+            throw new IllegalArgumentException("Expected position startpos or position fen <fen>");
+        }
+
+        if (movesIndex >= 0) {
+            MoveList moves = new MoveList();
+            for (int i = movesIndex + 1; i < tokens.length; i++) {
+                position.makeMove(findMove(position, tokens[i], moves));
+            }
+        }
+        return position;
+    }
+
+    private static int findMove(GameState position, String longAlgebraic, MoveList moves) {
+        position.getValidMoves(moves);
+        for (int i = 0; i < moves.size(); i++) {
+            if (PackedMove.toLongAlgebraic(moves.get(i)).equals(longAlgebraic)) {
+                return moves.get(i);
+            }
+        }
+        throw new IllegalArgumentException("Illegal move: " + longAlgebraic);
+    }
+
+    private void go(String[] tokens) {
+        int depth = Search.MAX_PLY - 1;
+        long moveTime = -1;
+        long time = -1;
+        long increment = 0;
+        int movesToGo = DEFAULT_MOVES_TO_GO;
+        boolean infinite = false;
+
+        String ownTime = gameState.whiteToMove ? "wtime" : "btime";
+        String ownIncrement = gameState.whiteToMove ? "winc" : "binc";
+        for (int i = 1; i < tokens.length; i++) {
+            String token = tokens[i];
+            if (token.equals("infinite")) {
+                infinite = true;
+            } else if (i + 1 < tokens.length) {
+                switch (token) {
+                    case "depth" -> depth = clamp(parseInt(tokens[++i]), 1, Search.MAX_PLY - 1);
+                    case "movetime" -> moveTime = parseInt(tokens[++i]);
+                    case "movestogo" -> movesToGo = Math.max(1, parseInt(tokens[++i]));
+                    default -> {
+                        if (token.equals(ownTime)) {
+                            time = parseInt(tokens[++i]);
+                        } else if (token.equals(ownIncrement)) {
+                            increment = parseInt(tokens[++i]);
+                        }
+                    }
+                }
+            }
+        }
+
+        SearchLimits limits;
+        if (infinite) {
+            limits = SearchLimits.depth(depth);
+        } else if (moveTime >= 0) {
+            long budget = Math.max(1, moveTime - MOVE_OVERHEAD_MILLIS);
+            limits = SearchLimits.moveTime(budget).withMaxDepth(depth);
+        } else if (time >= 0) {
+            // An even share of the clock plus most of the increment, never more than is left
+            long budget = time / movesToGo + increment * 3 / 4;
+            budget = Math.max(1, Math.min(budget, time - MOVE_OVERHEAD_MILLIS));
+            limits = SearchLimits.deadline(budget).withMaxDepth(depth);
+        } else {
+            limits = SearchLimits.depth(depth);
+        }
+
+        GameState root = gameState;
+        ParallelSearch currentSearch = search;
+        AtomicBoolean stopSearching = new AtomicBoolean();
+        searchStop = stopSearching;
+        CountDownLatch stop = infinite ? new CountDownLatch(1) : new CountDownLatch(0);
+        stopReceived = stop;
+        runningSearch = searchThread.submit(() -> {
+            String bestMove = "0000";  // the null move, if there is no move or the search failed
+            try {
+                Move move = currentSearch.search(root, limits, stopSearching, this::sendInfo).bestMove();
+                if (move != null) {
+                    bestMove = move.toLongAlgebraic();
+                }
+            } catch (RuntimeException e) {
+                send("info string search failed: " + e);  // the GUI still gets its bestmove
+            }
+            stop.await();  // UCI: after go infinite, bestmove only comes after stop
+            send("bestmove " + bestMove);
+            return null;
+        });
+    }
+
+    private void sendInfo(SearchResult result) {
+        StringBuilder info = new StringBuilder("info depth ").append(result.depth());
+        int score = result.score();
+        if (Math.abs(score) >= Search.MATE_SCORE - Search.MAX_PLY) {
+            int plies = Search.MATE_SCORE - Math.abs(score);
+            int moves = (plies + 1) / 2;
+            info.append(" score mate ").append(score > 0 ? moves : -moves);
+        } else {
+            info.append(" score cp ").append(score);
+        }
+        info.append(" nodes ").append(result.nodes())
+            .append(" nps ").append(result.nodesPerSecond())
+            .append(" time ").append(result.millis())
+            .append(" hashfull ").append(transpositionTable.hashfull());
+        if (!result.principalVariation().isEmpty()) {
+            info.append(" pv");
+            for (Move move : result.principalVariation()) {
+                info.append(' ').append(move.toLongAlgebraic());
+            }
+        }
+        send(info.toString());
+    }
+
+    /**
+     * Stops the running search, if any, and waits for its bestmove to be sent.
+     */
+    private void stopSearch() {
+        if (runningSearch == null) {
+            return;
+        }
+        stopReceived.countDown();
+        searchStop.set(true);
+        try {
+            runningSearch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Only an Error gets here, searches catch their exceptions, and it ended before bestmove
+            send("info string search failed: " + e.getCause());
+            send("bestmove 0000");
+        }
+        runningSearch = null;
+    }
+
+    private void send(String line) {
+        synchronized (output) {  // info lines come from the search thread, replies from the reader
+            output.println(line);
+        }
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -8,7 +8,8 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 
-import com.edwardhicks.chess.Move;
+import com.edwardhicks.chess.GameStatus;
+import com.edwardhicks.chess.PackedMove;
 import com.edwardhicks.chess.Square;
 import com.edwardhicks.chess.GameState;
 
@@ -21,9 +22,6 @@ public class BoardPanel extends JPanel {
 
     // TODO: should the below be a fixed Array?
     private final ArrayList<Square> playerClicks = new ArrayList<>();
-    private ArrayList<Move> validMoves = new ArrayList<>();
-
-    private boolean gameOver = false;
 
 
 
@@ -32,12 +30,10 @@ public class BoardPanel extends JPanel {
         this.gameState = gs;
         setPreferredSize(new Dimension(BOARD_LENGTH, BOARD_LENGTH));
 
-        validMoves = gameState.getValidMoves();
-
         addMouseListener(new MouseAdapter() {
             @Override
             public void mousePressed(MouseEvent e) {
-                if (gameOver) {
+                if (gameState.getStatus().isGameOver()) {
                     return;
                 }
                 int col = e.getX() / SQ_SIZE;
@@ -62,17 +58,9 @@ public class BoardPanel extends JPanel {
                     Square start = playerClicks.get(0);
                     Square end = playerClicks.get(1);
 
-                    Move moveAttempt = new Move(start, end, gameState.getBoard());
-
-                    for (Move move : validMoves) {
-                        if (moveAttempt.equals(move)) {
-                            gameState.makeMove(move);
-                            validMoves = gameState.getValidMoves();
-                            if (validMoves.isEmpty()) {
-                                gameOver = true;
-                            }
-                            break;
-                        }
+                    int move = gameState.getStatus().findMove(start.row() * 8 + start.col(), end.row() * 8 + end.col());
+                    if (move != PackedMove.NONE) {
+                        gameState.makeMove(move);
                     }
 
                     playerClicks.clear();
@@ -88,9 +76,6 @@ public class BoardPanel extends JPanel {
                 if (e.getKeyCode() == KeyEvent.VK_Z && !gameState.moveLog.isEmpty()) {  // Undo when 'z' is pressed
                     gameState.undoMove();
                     System.out.println("Undone move");
-
-                    validMoves = gameState.getValidMoves();
-                    gameOver = false;
                     repaint();  // Refresh the board display
                 }
             }
@@ -107,15 +92,16 @@ public class BoardPanel extends JPanel {
         drawBoard(g);
         drawPieces(g);
 
+        GameStatus status = gameState.getStatus();  // cached, repaints don't generate moves
         if (!playerClicks.isEmpty()) {
-            highlightSquares(g, gameState, validMoves, playerClicks.getFirst());
+            highlightSquares(g, gameState, status, playerClicks.getFirst());
         }
 
-        if (gameOver && gameState.inCheck() && gameState.whiteToMove) {
+        if (status.isCheckmate() && status.whiteToMove()) {
             drawText(g, "Black wins by checkmate");
-        } else if (gameOver && gameState.inCheck() && !gameState.whiteToMove) {
+        } else if (status.isCheckmate()) {
             drawText(g, "White wins by checkmate");
-        } else if (gameOver) {
+        } else if (status.isStalemate()) {
             drawText(g, "Stalemate");
         }
 
@@ -173,7 +159,7 @@ public class BoardPanel extends JPanel {
     /**
      * Highlight square selected and available moves.
      */
-    private void highlightSquares(Graphics g, GameState gs, ArrayList<Move> validMoves, Square sqSelected) {
+    private void highlightSquares(Graphics g, GameState gs, GameStatus status, Square sqSelected) {
         if (sqSelected != null) {
             int c = sqSelected.col();
             int r = sqSelected.row();
@@ -193,10 +179,11 @@ public class BoardPanel extends JPanel {
                 // Highlight valid moves from that square in yellow with transparency
                 g2d.setColor(YELLOW_TRANSPARENT);
 
-                for (Move move : validMoves) {
-                    if (move.start().row() == r && move.start().col() == c) {
-                        g2d.fillRect(SQ_SIZE * move.end().col(), SQ_SIZE * move.end().row(), SQ_SIZE, SQ_SIZE);
-                    }
+                long targets = status.targets(r * 8 + c);
+                while (targets != 0) {
+                    int end = Long.numberOfTrailingZeros(targets);
+                    targets &= targets - 1;
+                    g2d.fillRect(SQ_SIZE * (end & 7), SQ_SIZE * (end >>> 3), SQ_SIZE, SQ_SIZE);
                 }
             }
         }
@@ -0,0 +1,89 @@
+package com.edwardhicks.chess;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FenTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1",
+        "rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 3",
+        "rnbqkbnr/pppp1ppp/8/3Pp3/8/8/PPP1PPPP/RNBQKBNR w KQkq e6 0 3",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/8/8/8/8/8/8/R3K2R b Kq - 12 40",
+    })
+    void roundTrips(String fen) {
+        assertEquals(fen, GameState.fromFen(fen).toFen());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "4k3/8/8/8/8/8/4R3/4K3 w - - 0 1",   // black, not to move, is in check
+        "4k3/8/8/8/8/8/8/4K2n w - - 0 1 x",  // too many fields
+        "4k3/8/8/8/8/8/8/4K3 x - - 0 1",     // bad side to move
+        "4k3/8/8/8/8/8/8/4KK2 w - - 0 1",    // two white kings
+        "4k3/8/8/8/8/8/8/4K2P w - - 0 1",    // pawn on the first rank
+        "4k2p/8/8/8/8/8/8/4K3 w - - 0 1",    // pawn on the last rank
+        "4k3/8/8/8/4P3/8/8/4K3 w - e3 0 1",  // en passant square on the wrong rank for the side to move
+        "4k3/8/8/8/8/8/8/4K3 b - e3 0 1",    // en passant square with no pawn in front of it
+        "4k3/8/8/8/4P3/4P3/8/4K3 b - e3 0 1",  // en passant square occupied
+        "4k3/8/8/8/8/8/8/4K3 w - - a 1",     // move counter not a number
+        "4k4/8/8/8/8/8/8/4K3 w - - 0 1",     // ten squares on a rank
+        "4k3/8/8/8/8/8/8/4K35 w - - 0 1",    // trailing empty squares past the h-file
+    })
+    void rejectsImpossiblePositions(String fen) {
+        assertThrows(IllegalArgumentException.class, () -> GameState.fromFen(fen));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "4k3/8/8/8/8/8/8/4K2n w K - 0 1",   // knight where the rook should be
+        "4k3/8/8/8/8/8/8/R4K2 w Q - 0 1",   // king off its square
+        "r3k3/8/8/8/8/8/8/4K3 b k - 0 1",   // rook on the other side
+    })
+    void dropsCastlingRightsThePiecesDontSupport(String fen) {
+        GameState gameState = GameState.fromFen(fen);
+        assertEquals(0, gameState.getCastleRights());
+        MoveList moves = new MoveList();
+        gameState.getValidMoves(moves);
+        for (int i = 0; i < moves.size(); i++) {
+            assertEquals(false, PackedMove.isCastleMove(moves.get(i)), PackedMove.toLongAlgebraic(moves.get(i)));
+        }
+    }
+
+    @Test
+    void halfmoveClockFollowsMovesAndUndos() {
+        GameState gameState = GameState.fromFen("r3k2r/8/8/8/8/8/8/R3K2R b Kq - 12 40");
+        play(gameState, "a8b8", "a1a2");
+        assertEquals("1r2k2r/8/8/8/8/8/R7/4K2R b K - 14 41", gameState.toFen());
+        play(gameState, "h8h1");  // a capture resets it
+        assertEquals("1r2k3/8/8/8/8/8/R7/4K2r w - - 0 42", gameState.toFen());
+        gameState.undoMove();
+        assertEquals("1r2k2r/8/8/8/8/8/R7/4K2R b K - 14 41", gameState.toFen());
+        gameState.undoMove();
+        gameState.undoMove();
+        assertEquals("r3k2r/8/8/8/8/8/8/R3K2R b Kq - 12 40", gameState.toFen());
+    }
+
+    private static void play(GameState gameState, String... moves) {
+        MoveList legal = new MoveList();
+        for (String move : moves) {
+            gameState.getValidMoves(legal);
+            int found = PackedMove.NONE;
+            for (int i = 0; i < legal.size(); i++) {
+                if (PackedMove.toLongAlgebraic(legal.get(i)).equals(move)) {
+                    found = legal.get(i);
+                }
+            }
+            assertEquals(false, found == PackedMove.NONE, move);
+            gameState.makeMove(found);
+        }
+    }
+}
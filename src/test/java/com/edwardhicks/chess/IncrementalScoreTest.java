@@ -0,0 +1,25 @@
+package com.edwardhicks.chess;
+
+import org.junit.jupiter.api.Test;
+
+import com.edwardhicks.chess.search.Evaluator;
+import com.edwardhicks.chess.search.PawnHashTable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IncrementalScoreTest {
+
+    @Test
+    void randomGamesKeepTheScoresOfAFreshPosition() {
+        PawnHashTable pawnHashTable = new PawnHashTable(1 << 8);  // small, so slots get replaced too
+        RandomGames.play(21, 300, gameState -> {
+            String fen = gameState.toFen();
+            GameState fresh = GameState.fromFen(fen);
+            assertEquals(fresh.getMiddlegameScore(), gameState.getMiddlegameScore(), fen);
+            assertEquals(fresh.getEndgameScore(), gameState.getEndgameScore(), fen);
+            assertEquals(fresh.getPhase(), gameState.getPhase(), fen);
+            assertEquals(fresh.getPawnKey(), gameState.getPawnKey(), fen);
+            assertEquals(Evaluator.evaluate(fresh), Evaluator.evaluate(gameState, pawnHashTable), fen);
+        });
+    }
+}
@@ -0,0 +1,41 @@
+package com.edwardhicks.chess;
+
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Plays random games for tests that check GameState's incremental state against a fresh
+ * computation, handing every position reached, by a move or by undoing one, to the check.
+ */
+final class RandomGames {
+
+    // Castling, en passant and promotions to both sides are all a move away
+    static final String SPECIAL_MOVES_FEN = "r3k2r/1P4P1/8/3pP3/8/8/1p4p1/R3K2R w KQkq d6 0 1";
+
+    private RandomGames() {}
+
+    /**
+     * Every third game starts from SPECIAL_MOVES_FEN, the rest from the start position. After about
+     * one move in four the move is undone and checked again before play goes on.
+     */
+    static void play(long seed, int games, Consumer<GameState> check) {
+        Random random = new Random(seed);
+        MoveList moves = new MoveList();
+        for (int game = 0; game < games; game++) {
+            GameState gameState = game % 3 == 0 ? GameState.fromFen(SPECIAL_MOVES_FEN) : new GameState();
+            check.accept(gameState);
+            for (int ply = 0; ply < 200; ply++) {
+                gameState.getValidMoves(moves);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                gameState.makeMove(moves.get(random.nextInt(moves.size())));
+                check.accept(gameState);
+                if (random.nextInt(4) == 0) {
+                    gameState.undoMove();
+                    check.accept(gameState);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.edwardhicks.chess;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import static com.edwardhicks.chess.bitboard.Bitboards.QUEEN;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StagedMoveGenerationTest {
+
+    @Test
+    void capturesAndQuietMovesSplitTheLegalMoves() {
+        MoveList all = new MoveList();
+        MoveList captures = new MoveList();
+        MoveList quiets = new MoveList();
+        int[] specialMoves = new int[3];  // en passant, under-promotions and castles seen in a stage
+        RandomGames.play(16, 300, gameState -> {
+            gameState.getValidMoves(all);
+            captures.clear();
+            gameState.getValidCaptures(captures);
+            quiets.clear();
+            gameState.getValidQuietMoves(quiets);
+
+            String fen = gameState.toFen();
+            for (int i = 0; i < captures.size(); i++) {
+                int move = captures.get(i);
+                assertTrue(PackedMove.isCapture(move) || PackedMove.isPromotion(move), fen + " " + PackedMove.toLongAlgebraic(move));
+                specialMoves[0] += PackedMove.isEnpassantMove(move) ? 1 : 0;
+                specialMoves[1] += PackedMove.isPromotion(move) && PackedMove.promotion(move) % 6 != QUEEN ? 1 : 0;
+            }
+            for (int i = 0; i < quiets.size(); i++) {
+                int move = quiets.get(i);
+                assertTrue(!PackedMove.isCapture(move) && !PackedMove.isPromotion(move), fen + " " + PackedMove.toLongAlgebraic(move));
+                specialMoves[2] += PackedMove.isCastleMove(move) ? 1 : 0;
+            }
+
+            // Same moves, none of them twice, so no move is in both stages
+            assertEquals(all.size(), captures.size() + quiets.size(), fen);
+            assertArrayEquals(sorted(all), sortedUnion(captures, quiets), fen);
+        });
+        assertTrue(specialMoves[0] > 0 && specialMoves[1] > 0 && specialMoves[2] > 0, Arrays.toString(specialMoves));
+    }
+
+    private static int[] sorted(MoveList moves) {
+        int[] array = new int[moves.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = moves.get(i);
+        }
+        Arrays.sort(array);
+        return array;
+    }
+
+    private static int[] sortedUnion(MoveList first, MoveList second) {
+        int[] array = new int[first.size() + second.size()];
+        for (int i = 0; i < first.size(); i++) {
+            array[i] = first.get(i);
+        }
+        for (int i = 0; i < second.size(); i++) {
+            array[first.size() + i] = second.get(i);
+        }
+        Arrays.sort(array);
+        return array;
+    }
+}
@@ -0,0 +1,72 @@
+package com.edwardhicks.chess.book;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.MoveList;
+import com.edwardhicks.chess.PackedMove;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PolyglotKeysTest {
+
+    // The reference keys from the Polyglot book format description
+    @ParameterizedTest
+    @CsvSource({
+        "'', 463b96181691fc9c",
+        "e2e4, 823c9b50fd114196",
+        "e2e4 d7d5, 0756b94461c50fb0",
+        "e2e4 d7d5 e4e5, 662fafb965db29d4",
+        "e2e4 d7d5 e4e5 f7f5, 22a48b5a8e47ff78",
+        "e2e4 d7d5 e4e5 f7f5 e1e2, 652a607ca3f242c1",
+        "e2e4 d7d5 e4e5 f7f5 e1e2 e8f7, 00fdd303c946bdd9",
+        "a2a4 b7b5 h2h4 b5b4 c2c4, 3c8123ea7b067637",
+        "a2a4 b7b5 h2h4 b5b4 c2c4 b4c3 a1a3, 5c3f9b829b279560",
+    })
+    void standardKeysMatchThePublishedKeys(String moves, String key) {
+        assertEquals(Long.parseUnsignedLong(key, 16), PolyglotKeys.standard().key(play(moves)));
+    }
+
+    @Test
+    void findsBookMovesByStandardKey(@TempDir Path dir) throws Exception {
+        ByteBuffer entry = ByteBuffer.allocate(16);
+        entry.putLong(0x463b96181691fc9cL)
+             .putShort((short) (12 << 6 | 28))  // e2 (file 4, rank 2) to e4 (file 4, rank 4)
+             .putShort((short) 10)
+             .putInt(0);
+        Path file = dir.resolve("book.bin");
+        Files.write(file, entry.array());
+
+        try (PolyglotBook book = new PolyglotBook(file)) {
+            List<BookMove> moves = book.lookup(new GameState());
+            assertEquals(1, moves.size());
+            assertEquals("e2e4", PackedMove.toLongAlgebraic(moves.get(0).move()));
+            assertEquals(10, moves.get(0).weight());
+            assertEquals(List.of(), book.lookup(play("e2e4")));
+        }
+    }
+
+    private static GameState play(String moves) {
+        GameState gameState = new GameState();
+        MoveList legalMoves = new MoveList();
+        for (String move : moves.isEmpty() ? new String[0] : moves.split(" ")) {
+            gameState.getValidMoves(legalMoves);
+            int played = PackedMove.NONE;
+            for (int i = 0; i < legalMoves.size(); i++) {
+                if (PackedMove.toLongAlgebraic(legalMoves.get(i)).equals(move)) {
+                    played = legalMoves.get(i);
+                }
+            }
+            gameState.makeMove(played);
+        }
+        return gameState;
+    }
+}
@@ -0,0 +1,23 @@
+package com.edwardhicks.chess.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EngineMetricsTest {
+
+    @Test
+    void readingNodesPerSecondLeavesItAlone() throws Exception {
+        EngineMetrics metrics = EngineMetrics.get();
+        metrics.sample();
+        metrics.recordSearchWork(1_000_000, 0, 0, 0, 0, 0, 0);
+        Thread.sleep(20);
+        metrics.sample();
+
+        double nodesPerSecond = metrics.getNodesPerSecond();
+        assertTrue(nodesPerSecond > 0);
+        assertEquals(nodesPerSecond, metrics.getNodesPerSecond());  // a second client sees the same rate
+        assertTrue(metrics.toPrometheusText().contains("chess_nodes_per_second " + nodesPerSecond));
+    }
+}
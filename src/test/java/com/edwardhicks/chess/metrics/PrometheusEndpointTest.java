@@ -0,0 +1,39 @@
+package com.edwardhicks.chess.metrics;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrometheusEndpointTest {
+
+    @Test
+    void aStalledClientDoesNotBlockTheNextScrape() throws Exception {
+        PrometheusEndpoint endpoint = new PrometheusEndpoint(0, EngineMetrics.get(), 200);
+        endpoint.start();
+
+        try (Socket stalled = new Socket(InetAddress.getLoopbackAddress(), endpoint.getPort())) {
+            stalled.getOutputStream().write("GET /metrics HTTP/1.1\r\n".getBytes(StandardCharsets.US_ASCII));  // and never the blank line
+            String response = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> scrape(endpoint.getPort()));
+            assertTrue(response.startsWith("HTTP/1.1 200 OK"), response);
+            assertTrue(response.contains("chess_searches_total"), response);
+        }
+    }
+
+    private static String scrape(int port) throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /metrics HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
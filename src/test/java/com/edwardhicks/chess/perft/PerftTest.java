@@ -0,0 +1,67 @@
+package com.edwardhicks.chess.perft;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.Move;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The regression check for move generation: perft counts of the standard positions, to a depth
+ * that runs in a few seconds. PerftSuite goes deeper and reports the speed.
+ */
+class PerftTest {
+
+    private static final int MAX_DEPTH = 4;
+
+    // Leaf nodes below each root move of Kiwipete at depth 3, from a reference engine
+    private static final String KIWIPETE_DIVIDE_3 = """
+        a2a3 2186  b2b3 1964  g2g3 1882  d5d6 1991  a2a4 2149  g2g4 1843  g2h3 1970  d5e6 2241
+        c3b1 2038  c3d1 2040  c3a4 2203  c3b5 2138  e5d3 1803  e5c4 1880  e5g4 1878  e5c6 2027
+        e5g6 1997  e5d7 2124  e5f7 2080  d2c1 1963  d2e3 2136  d2f4 2000  d2g5 2134  d2h6 2019
+        e2d1 1733  e2f1 2060  e2d3 2050  e2c4 2082  e2b5 2057  e2a6 1907  a1b1 1969  a1c1 1968
+        a1d1 1885  h1f1 1929  h1g1 2013  f3d3 2005  f3e3 2174  f3g3 2214  f3h3 2360  f3f4 2132
+        f3g4 2169  f3f5 2396  f3h5 2267  f3f6 2111  e1d1 1894  e1f1 1855  e1g1 2059  e1c1 1887
+        """;
+
+    static List<PerftPosition> positions() {
+        return PerftSuite.POSITIONS;
+    }
+
+    @ParameterizedTest
+    @MethodSource("positions")
+    void nodeCountsMatch(PerftPosition position) {
+        GameState gameState = position.setup().get();
+        String fen = gameState.toFen();
+        for (int depth = 1; depth <= Math.min(MAX_DEPTH, position.maxDepth()); depth++) {
+            assertEquals(position.expectedNodes(depth), Perft.perft(gameState, depth), position.name() + " depth " + depth);
+            assertEquals(fen, gameState.toFen(), "perft left the position changed");
+        }
+    }
+
+    @Test
+    void kiwipeteDivideMatches() {
+        Map<String, Long> expected = new LinkedHashMap<>();
+        String[] fields = KIWIPETE_DIVIDE_3.strip().split("\\s+");
+        for (int i = 0; i < fields.length; i += 2) {
+            expected.put(fields[i], Long.parseLong(fields[i + 1]));
+        }
+
+        GameState kiwipete = PerftSuite.POSITIONS.get(1).setup().get();
+        Map<String, Long> actual = new LinkedHashMap<>();
+        for (Map.Entry<Move, Long> entry : Perft.divide(kiwipete, 3).entrySet()) {
+            actual.put(entry.getKey().toLongAlgebraic(), entry.getValue());
+        }
+        assertEquals(expected.keySet().stream().sorted().toList(), actual.keySet().stream().sorted().toList());
+        for (Map.Entry<String, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), actual.get(entry.getKey()), entry.getKey());
+        }
+    }
+}
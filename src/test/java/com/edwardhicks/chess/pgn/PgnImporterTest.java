@@ -0,0 +1,61 @@
+package com.edwardhicks.chess.pgn;
+
+import java.io.StringReader;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class PgnImporterTest {
+
+    private static final String GAME = """
+        [White "A"]
+        [Black "B"]
+        [Result "1-0"]
+
+        1. e4 e5 2. Bc4 Nc6 3. Qh5 Nf6 4. Qxf7# 1-0
+
+        """;
+
+    private static final String IMPOSSIBLE_FEN_GAME = """
+        [White "C"]
+        [Black "D"]
+        [Result "*"]
+        [FEN "4k3/8/8/8/8/8/4R3/4K3 w - - 0 1"]
+
+        1. Rxe8 *
+
+        """;
+
+    @Test
+    void replaysGames() throws Exception {
+        ImportStats stats = new PgnImporter(2).importGames(new StringReader(GAME.repeat(10)), result -> {});
+        assertEquals(10, stats.games());
+        assertEquals(0, stats.failedGames());
+        assertEquals(10 * 8, stats.positions());
+    }
+
+    @Test
+    void countsUnplayableGamesAsFailed() throws Exception {
+        String pgn = IMPOSSIBLE_FEN_GAME + GAME.repeat(500);
+        ImportStats stats = assertTimeoutPreemptively(Duration.ofSeconds(30),
+            () -> new PgnImporter(1).importGames(new StringReader(pgn), result -> {}));
+        assertEquals(501, stats.games());
+        assertEquals(1, stats.failedGames());
+    }
+
+    @Test
+    void rethrowsWhatStoppedAWorkerInsteadOfWaitingForIt() {
+        RuntimeException thrown = new RuntimeException("consumer failed");
+        String pgn = GAME.repeat(500);
+        RuntimeException caught = assertTimeoutPreemptively(Duration.ofSeconds(30),
+            () -> assertThrows(RuntimeException.class, () -> new PgnImporter(1).importGames(new StringReader(pgn), result -> {
+                throw thrown;
+            })));
+        assertSame(thrown, caught);
+    }
+}
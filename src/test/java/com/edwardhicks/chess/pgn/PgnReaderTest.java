@@ -0,0 +1,41 @@
+package com.edwardhicks.chess.pgn;
+
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PgnReaderTest {
+
+    @Test
+    void cutsALineWithoutLineBreaks() throws Exception {
+        String endless = "1. e4 e5 ".repeat((8 << 20) / 9);  // about 8 MB on one line
+        String pgn = "[White \"A\"]\n\n" + endless + "\n[White \"B\"]\n\n1. d4 d5 *\n";
+        try (PgnReader reader = new PgnReader(new StringReader(pgn))) {
+            PgnGame first = reader.next();
+            assertTrue(first.truncated());
+            assertEquals("A", first.tag("White"));
+            assertTrue(first.movetext().length() <= PgnReader.MAX_MOVETEXT_CHARS);
+
+            PgnGame second = reader.next();
+            assertEquals("B", second.tag("White"));
+            assertEquals("1. d4 d5 *\n", second.movetext());
+            assertFalse(second.truncated());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void readsAnyLineEnd() throws Exception {
+        String pgn = "[White \"A\"]\r\n\r\n1. e4 e5\r2. Nf3 *\r\n[White \"B\"]\n\n1. d4 *";
+        try (PgnReader reader = new PgnReader(new StringReader(pgn))) {
+            assertEquals("1. e4 e5\n2. Nf3 *\n", reader.next().movetext());
+            assertEquals("1. d4 *\n", reader.next().movetext());
+            assertNull(reader.next());
+        }
+    }
+}
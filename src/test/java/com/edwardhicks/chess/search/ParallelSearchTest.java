@@ -0,0 +1,50 @@
+package com.edwardhicks.chess.search;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.metrics.EngineMetrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelSearchTest {
+
+    @Test
+    void reusedSearchesPlayInTheNewPosition() {
+        try (ParallelSearch search = new ParallelSearch(3, new TranspositionTable(1))) {
+            GameState start = new GameState();
+            assertTrue(start.getValidMoves().contains(search.search(start, SearchLimits.depth(4)).bestMove()));
+
+            // The same threads, now on a position where Kxg2 is the only legal move
+            GameState onlyMove = GameState.fromFen("7k/8/8/8/8/8/6q1/7K w - - 0 1");
+            assertEquals(1, onlyMove.getValidMoves().size());
+            assertEquals(onlyMove.getValidMoves().get(0), search.search(onlyMove, SearchLimits.depth(4)).bestMove());
+        }
+    }
+
+    @Test
+    void countsOneSearchHoweverManyThreadsRanIt() {
+        try (ParallelSearch search = new ParallelSearch(4, new TranspositionTable(1))) {
+            long before = EngineMetrics.get().getSearches();
+            search.search(new GameState(), SearchLimits.depth(3));
+            assertEquals(before + 1, EngineMetrics.get().getSearches());
+        }
+    }
+
+    @Test
+    void aStopSetBeforeTheSearchStartsIsKept() {
+        try (ParallelSearch search = new ParallelSearch(2, new TranspositionTable(1))) {
+            AtomicBoolean stop = new AtomicBoolean(true);
+            GameState start = new GameState();
+            // No depth or time limit to speak of, so only the stop can end this search
+            SearchResult result = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> search.search(start, SearchLimits.depth(Search.MAX_PLY - 1), stop, progress -> {}));
+            assertTrue(start.getValidMoves().contains(result.bestMove()));
+        }
+    }
+}
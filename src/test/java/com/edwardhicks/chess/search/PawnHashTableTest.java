@@ -0,0 +1,23 @@
+package com.edwardhicks.chess.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PawnHashTableTest {
+
+    @Test
+    void aReplacedSlotMissesForItsOldKey() {
+        PawnHashTable table = new PawnHashTable(4);
+        long first = 0x0123_4567_89AB_CDE1L;
+        long second = first + 4;  // the same slot
+        table.store(first, PawnHashTable.pack(-15, 30));
+        table.store(second, PawnHashTable.pack(25, -40));
+
+        assertEquals(PawnHashTable.MISS, table.probe(first));
+        long packed = table.probe(second);
+        assertEquals(25, PawnHashTable.middlegame(packed));
+        assertEquals(-40, PawnHashTable.endgame(packed));
+        assertEquals(PawnHashTable.MISS, table.probe(second + 8));  // same slot, never stored
+    }
+}
@@ -0,0 +1,57 @@
+package com.edwardhicks.chess.search;
+
+import org.junit.jupiter.api.Test;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.MoveList;
+import com.edwardhicks.chess.PackedMove;
+
+import static com.edwardhicks.chess.bitboard.Bitboards.*;
+import static com.edwardhicks.chess.search.Evaluator.PIECE_VALUES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StaticExchangeTest {
+
+    private final StaticExchange staticExchange = new StaticExchange();
+
+    @Test
+    void pawnTakesDefendedKnight() {
+        // exd5 exd5
+        assertEquals(PIECE_VALUES[KNIGHT] - PIECE_VALUES[PAWN], see("4k3/8/4p3/3n4/4P3/8/8/4K3 w - - 0 1", "e4d5"));
+    }
+
+    @Test
+    void rookBehindARookRecapturesThroughIt() {
+        // Rxd5 Rxd5 Rxd5, the rook on d1 joins once the one on d2 has gone
+        assertEquals(PIECE_VALUES[PAWN], see("3rk3/8/8/3p4/8/8/3R4/3RK3 w - - 0 1", "d2d5"));
+        // Without it, Rxd5 Rxd5 loses the rook for a pawn
+        assertEquals(PIECE_VALUES[PAWN] - PIECE_VALUES[ROOK], see("3rk3/8/8/3p4/8/8/3R4/4K3 w - - 0 1", "d2d5"));
+    }
+
+    @Test
+    void enPassantCapturesThePawnBesideIt() {
+        // exd6 opens the d-file, so Rxd6 would lose the rook to Rxd6 and black doesn't recapture
+        assertEquals(PIECE_VALUES[PAWN], see("3rk3/8/8/3pP3/8/8/8/3RK3 w - d6 0 1", "e5d6"));
+        // With nothing behind, the recapture is free
+        assertEquals(0, see("3rk3/8/8/3pP3/8/8/8/4K3 w - d6 0 1", "e5d6"));
+    }
+
+    @Test
+    void kingOnlyRecapturesAnUndefendedPiece() {
+        // Qxf7+ Kxf7 when nothing backs up the queen, and no recapture when the bishop does
+        assertEquals(PIECE_VALUES[PAWN] - PIECE_VALUES[QUEEN], see("4k3/5p2/8/8/8/8/8/4KQ2 w - - 0 1", "f1f7"));
+        assertEquals(PIECE_VALUES[PAWN], see("4k3/5p2/8/8/2B5/8/8/4KQ2 w - - 0 1", "f1f7"));
+    }
+
+    private int see(String fen, String longAlgebraic) {
+        GameState gameState = GameState.fromFen(fen);
+        MoveList moves = new MoveList();
+        gameState.getValidMoves(moves);
+        for (int i = 0; i < moves.size(); i++) {
+            if (PackedMove.toLongAlgebraic(moves.get(i)).equals(longAlgebraic)) {
+                return staticExchange.evaluate(gameState, moves.get(i));
+            }
+        }
+        throw new IllegalArgumentException("Illegal move: " + longAlgebraic);
+    }
+}
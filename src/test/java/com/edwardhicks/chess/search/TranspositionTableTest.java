@@ -0,0 +1,43 @@
+package com.edwardhicks.chess.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TranspositionTableTest {
+
+    @Test
+    void largeSizesAreCappedToAnArrayThatFits() {
+        assertEquals(1L << 15, TranspositionTable.buckets(1));
+        assertEquals(1L << 28, TranspositionTable.buckets(8192));
+        assertEquals(1L << 28, TranspositionTable.buckets(16384));
+        assertEquals(1L << 28, TranspositionTable.buckets(Integer.MAX_VALUE));
+        assertEquals(1, TranspositionTable.buckets(0));
+    }
+
+    @Test
+    void storesAndProbesKeysSharingABucket() {
+        TranspositionTable table = new TranspositionTable(1);
+        long buckets = TranspositionTable.buckets(1);
+        long deep = 0x1234_5678_9ABC_0042L;
+        long shallow = deep + buckets;  // the same bucket, a different key
+        long absent = deep + 2 * buckets;
+
+        table.store(deep, 0x1234, 57, 6, TranspositionTable.EXACT, 0);
+        table.store(shallow, 0x4321, -80, 2, TranspositionTable.LOWER_BOUND, 0);
+
+        long data = table.probe(deep);
+        assertEquals(0x1234, TranspositionTable.move(data));
+        assertEquals(57, TranspositionTable.score(data, 0));
+        assertEquals(6, TranspositionTable.depth(data));
+        assertEquals(TranspositionTable.EXACT, TranspositionTable.bound(data));
+
+        data = table.probe(shallow);
+        assertEquals(0x4321, TranspositionTable.move(data));
+        assertEquals(-80, TranspositionTable.score(data, 0));
+        assertEquals(2, TranspositionTable.depth(data));
+        assertEquals(TranspositionTable.LOWER_BOUND, TranspositionTable.bound(data));
+
+        assertEquals(TranspositionTable.NO_ENTRY, table.probe(absent));
+    }
+}
@@ -0,0 +1,79 @@
+package com.edwardhicks.chess.server;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameServerTest {
+
+    @Test
+    void errorsAreRepliesAndKeepTheConnection() throws Exception {
+        try (GameServer server = new GameServer(0, Duration.ofMinutes(1))) {
+            Thread.ofVirtual().start(() -> {
+                try {
+                    server.serve();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                 PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+                out.println("new 4k3/8/8/8/8/8/4R3/4K3 w - - 0 1");
+                assertTrue(in.readLine().startsWith("error FEN side not to move is in check"));
+                out.println("move e2e4");
+                assertEquals("error no session, use new or attach", in.readLine());
+
+                out.println("new");
+                assertEquals("ok 1", in.readLine());
+                out.println("move e2e5");
+                assertEquals("error illegal move e2e5", in.readLine());
+                out.println("move e2e4");
+                assertEquals("ok", in.readLine());
+                out.println("status");
+                assertEquals("ok playing rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", in.readLine());
+            }
+        }
+    }
+
+    @Test
+    void evictedSessionsCanBePeekedAndResumed() throws Exception {
+        try (GameServer server = new GameServer(0, Duration.ofMillis(1))) {
+            Thread.ofVirtual().start(() -> {
+                try {
+                    server.serve();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                 PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+                out.println("new");
+                assertEquals("ok 1", in.readLine());
+                out.println("move g1f3");
+                assertEquals("ok", in.readLine());
+
+                Thread.sleep(5);
+                server.evictIdleSessions();
+                assertTrue(server.sessionStats(1).evicted());
+                out.println("peek 1");
+                assertEquals("ok 1 rnbqkbnr/pppppppp/8/8/8/5N2/PPPPPPPP/RNBQKB1R b KQkq - 1 1", in.readLine());
+
+                out.println("move g8f6");
+                assertEquals("ok", in.readLine());
+                out.println("peek 1");
+                assertEquals("ok 2 rnbqkb1r/pppppppp/5n2/8/8/5N2/PPPPPPPP/RNBQKB1R w KQkq - 2 2", in.readLine());
+            }
+        }
+    }
+}
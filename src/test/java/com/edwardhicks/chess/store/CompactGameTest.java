@@ -0,0 +1,63 @@
+package com.edwardhicks.chess.store;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.edwardhicks.chess.GameState;
+import com.edwardhicks.chess.MoveList;
+import com.edwardhicks.chess.PackedMove;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CompactGameTest {
+
+    @Test
+    void randomGamesDecodeToTheSamePosition() {
+        Random random = new Random(42);
+        MoveList moves = new MoveList();
+        for (int game = 0; game < 300; game++) {
+            // Some from a position with castling, en passant and promotions close at hand
+            GameState gameState = game % 3 == 0 ? GameState.fromFen("r3k2r/1P4P1/8/3pP3/8/8/1p4p1/R3K2R w KQkq d6 0 1") : new GameState();
+            for (int ply = 0; ply < 200; ply++) {
+                gameState.getValidMoves(moves);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                gameState.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+
+            GameState decoded = CompactGame.decode(CompactGame.encode(gameState, "*"));
+            assertEquals(gameState.toFen(), decoded.toFen());
+            assertEquals(gameState.moveLog.size(), decoded.moveLog.size());
+            for (int ply = 0; ply < gameState.moveLog.size(); ply++) {
+                assertEquals(gameState.getMove(ply), decoded.getMove(ply));
+            }
+        }
+    }
+
+    @Test
+    void rejectsMovesThatAreIllegalInThePosition() {
+        GameState gameState = new GameState();
+        assertThrows(IllegalArgumentException.class, () -> CompactGame.decode(withOneMove(gameState, 52, 28)));  // e2e5
+
+        assertEquals(PackedMove.NONE, gameState.legalMove(52, 28, 0));
+        assertEquals("e2e4", PackedMove.toLongAlgebraic(gameState.legalMove(52, 36, 0)));
+
+        GameState kingsOnly = GameState.fromFen("8/8/8/8/8/8/8/1K5k w - - 0 1");
+        assertEquals(PackedMove.NONE, kingsOnly.legalMove(57, 59, 0));  // Kb1-d1 is not a castle
+        assertThrows(IllegalArgumentException.class, () -> CompactGame.decode(withOneMove(kingsOnly, 57, 59)));
+    }
+
+    private static byte[] withOneMove(GameState gameState, int start, int end) {
+        byte[] record = CompactGame.encode(gameState, "*");
+        byte[] withMove = new byte[record.length + 2];
+        System.arraycopy(record, 0, withMove, 0, record.length);
+        withMove[1] = 1;  // one ply
+        short move = (short) (start | end << 6);
+        withMove[record.length] = (byte) (move >>> 8);
+        withMove[record.length + 1] = (byte) move;
+        return withMove;
+    }
+}
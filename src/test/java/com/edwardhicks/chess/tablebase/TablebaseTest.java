@@ -0,0 +1,54 @@
+package com.edwardhicks.chess.tablebase;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.edwardhicks.chess.GameState;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TablebaseTest {
+
+    @Test
+    void generatesTheKnownLongestMates(@TempDir Path dir) throws Exception {
+        TablebaseGenerator generator = new TablebaseGenerator(dir, 2);
+        generator.generate("KQvK");
+        generator.generate("KRvK");
+        assertEquals(20, longestMate(dir, "KQvK"));
+        assertEquals(32, longestMate(dir, "KRvK"));
+    }
+
+    @Test
+    void probesMateDistancesAndSkipsPositionsWithCastleRights(@TempDir Path dir) throws Exception {
+        new TablebaseGenerator(dir, 2).generate("KRvK");
+        Tablebases tablebases = new Tablebases(dir);
+
+        // Kb6, then Kb8 is forced and Rh8 mates
+        assertEquals(new TablebaseResult(TablebaseResult.WIN, 3), tablebases.probe(GameState.fromFen("k7/8/2K5/8/8/8/8/7R w - - 0 1")));
+        assertEquals(new TablebaseResult(TablebaseResult.LOSS, 2), tablebases.probe(GameState.fromFen("k7/8/1K6/8/8/8/8/7R b - - 0 1")));
+        assertEquals(new TablebaseResult(TablebaseResult.LOSS, 0), tablebases.probe(GameState.fromFen("1k5R/8/1K6/8/8/8/8/8 b - - 0 1")));
+        // The same material with black to move and the rook hanging
+        assertEquals(TablebaseResult.DRAWN, tablebases.probe(GameState.fromFen("8/8/8/8/8/8/6k1/4K2R b - - 0 1")));
+
+        assertNull(tablebases.probe(GameState.fromFen("6k1/8/8/8/8/8/8/4K2R w K - 0 1")));
+        assertNotNull(tablebases.probe(GameState.fromFen("6k1/8/8/8/8/8/8/4K2R w - - 0 1")));
+        assertNull(tablebases.probe(GameState.fromFen("7k/8/8/8/8/8/8/4QK2 w - - 0 1")));  // KQvK wasn't generated
+    }
+
+    private static int longestMate(Path dir, String name) throws Exception {
+        byte[] table = Files.readAllBytes(Tablebases.file(dir, name));
+        int longest = 0;
+        for (int i = Tablebases.HEADER_BYTES; i < table.length; i++) {
+            int value = table[i] & 0xFF;
+            if (value <= Tablebases.MAX_PLIES) {
+                longest = Math.max(longest, value);
+            }
+        }
+        return longest;
+    }
+}
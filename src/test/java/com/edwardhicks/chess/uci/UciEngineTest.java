@@ -0,0 +1,49 @@
+package com.edwardhicks.chess.uci;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UciEngineTest {
+
+    private static List<String> run(String commands) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new UciEngine(new ByteArrayInputStream(commands.getBytes(StandardCharsets.US_ASCII)), out).run();
+        return out.toString(StandardCharsets.US_ASCII).lines().toList();
+    }
+
+    @Test
+    void answersGoWithBestmove() throws Exception {
+        List<String> lines = run("uci\nisready\nposition startpos moves e2e4 e7e5\ngo depth 3\nisready\nquit\n");
+        assertTrue(lines.contains("uciok"));
+        // quit right after go stops the search early, but it still ends with exactly one bestmove
+        assertEquals(1, lines.stream().filter(line -> line.matches("bestmove [a-h][1-8][a-h][1-8]")).count());
+    }
+
+    @Test
+    void stopRightAfterGoInfiniteEndsTheSearch() {
+        // The stop usually arrives before the search thread has started searching
+        List<String> lines = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> run("go infinite\nstop\nisready\nquit\n"));
+        assertEquals(1, lines.stream().filter(line -> line.matches("bestmove [a-h][1-8][a-h][1-8]")).count());
+        assertTrue(lines.contains("readyok"));
+    }
+
+    @Test
+    void badInputIsReportedAndTheEngineCarriesOn() throws Exception {
+        List<String> lines = run("position fen 4k3/8/8/8/8/8/4R3/4K3 w - - 0 1\n"
+                                 + "position startpos moves e2e5\n"
+                                 + "position fen 7k/5Q2/6K1/8/8/8/8/8 b - - 0 1\n"
+                                 + "go depth 2\nisready\nquit\n");
+        assertEquals(2, lines.stream().filter(line -> line.startsWith("info string ")).count());
+        assertTrue(lines.contains("bestmove 0000"));  // stalemate, no move to play
+        assertTrue(lines.contains("readyok"));
+    }
+}